@@ -0,0 +1,75 @@
+package lifebench;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.IntBinaryOperator;
+
+/**
+* <p>
+* Bridge from the benchmarks to the simulator classes. JMH refuses benchmarks
+* in the default package and Java cannot import from it, so boards are built
+* by name and their methods are bound once to plain functional interfaces.
+* The bindings go through LambdaMetafactory, which the JIT inlines like a
+* direct call, so the benchmarks measure the simulator and not reflection.
+* </p>
+*/
+
+final class Boards {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private Boards() {
+	}
+
+	// Board class of an engine name as used by --engine
+	static Class<?> engineClass(String engine) throws ReflectiveOperationException {
+		switch (engine) {
+		case "int":
+			return Class.forName("Board");
+		case "bit":
+			return Class.forName("BitBoard");
+		case "sparse":
+			return Class.forName("SparseBoard");
+		case "hashlife":
+			return Class.forName("HashLifeBoard");
+		default:
+			throw new IllegalArgumentException("Unknown engine: " + engine);
+		}
+	}
+
+	// A size x size board of the engine filled with a random soup of the given density
+	static Object soup(String engine, int size, double density, long seed) throws ReflectiveOperationException {
+		Object board = engineClass(engine).getConstructor(int.class, int.class).newInstance(size, size);
+		Class<?> lifeBoard = Class.forName("LifeBoard");
+		Class.forName("RandomSoup").getMethod("fill", lifeBoard, double.class, long.class)
+				.invoke(null, board, density, seed);
+		return board;
+	}
+
+	// Binds a public no-argument void method of target, such as step or print
+	static Runnable action(Object target, String method) throws Throwable {
+		MethodHandle impl = LOOKUP.findVirtual(target.getClass(), method, MethodType.methodType(void.class));
+		CallSite site = LambdaMetafactory.metafactory(LOOKUP, "run",
+				MethodType.methodType(Runnable.class, target.getClass()),
+				MethodType.methodType(void.class), impl, MethodType.methodType(void.class));
+		return (Runnable) site.getTarget().invoke(target);
+	}
+
+	// Binds a public int method of target taking (x, y), such as countAliveNeighbours
+	static IntBinaryOperator cellFunction(Object target, String method) throws Throwable {
+		MethodType type = MethodType.methodType(int.class, int.class, int.class);
+		MethodHandle impl = LOOKUP.findVirtual(target.getClass(), method, type);
+		CallSite site = LambdaMetafactory.metafactory(LOOKUP, "applyAsInt",
+				MethodType.methodType(IntBinaryOperator.class, target.getClass()),
+				type, impl, type);
+		return (IntBinaryOperator) site.getTarget().invoke(target);
+	}
+
+	// Calls a public method by name, for setup work outside the measured code
+	static Object call(Object target, String method) throws ReflectiveOperationException {
+		return target.getClass().getMethod(method).invoke(target);
+	}
+}
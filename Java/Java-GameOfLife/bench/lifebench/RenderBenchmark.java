@@ -0,0 +1,113 @@
+package lifebench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+* <p>
+* Cost of putting one generation on screen: Board.print() against
+* TerminalRenderer, both writing to a stream that discards everything. The
+* renderer alternates between two consecutive generations so every frame
+* redraws exactly one generation's worth of changes.
+* </p>
+*
+* print() still spawns the clear command on every call, which is part of what
+* this measures.
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RenderBenchmark {
+
+	@Param({ "64", "256", "1024" })
+	int size;
+
+	@Param({ "0.3" })
+	double density;
+
+	private PrintStream originalOut;
+	private Runnable print;
+	private MethodHandle renderCurrent;
+	private MethodHandle renderNext;
+	private boolean flip;
+
+	@Setup
+	public void setUp() throws Throwable {
+		originalOut = System.out;
+		// Discards everything, OutputStream.nullOutputStream() would need JDK 11
+		PrintStream nowhere = new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+
+			public void write(byte[] b, int off, int len) {
+			}
+		});
+		System.setOut(nowhere);
+
+		Object current = Boards.soup("int", size, density, 42);
+		Object next = Boards.soup("int", size, density, 42);
+		Boards.call(next, "step");
+		print = Boards.action(current, "print");
+
+		Class<?> cellGrid = Class.forName("CellGrid");
+		Class<?> rendererClass = Class.forName("TerminalRenderer");
+		Object renderer = rendererClass.getConstructor(OutputStream.class).newInstance(nowhere);
+		MethodHandle render = MethodHandles.lookup().findVirtual(rendererClass, "render",
+				MethodType.methodType(void.class, cellGrid, CharSequence.class));
+		renderCurrent = MethodHandles.insertArguments(render, 0, renderer, current, "Generation");
+		renderNext = MethodHandles.insertArguments(render, 0, renderer, next, "Generation");
+		renderCurrent.invoke();
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.setOut(originalOut);
+	}
+
+	@Benchmark
+	public void print() {
+		print.run();
+	}
+
+	@Benchmark
+	public void render() throws Throwable {
+		flip = !flip;
+		if (flip) {
+			renderNext.invoke();
+		} else {
+			renderCurrent.invoke();
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(RenderBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
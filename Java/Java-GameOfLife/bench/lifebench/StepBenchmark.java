@@ -0,0 +1,101 @@
+package lifebench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+* <p>
+* Throughput of one generation across board sizes, soup densities and
+* engines, plus the cost of countAliveNeighbours over a whole Board. Run
+* main() (or JMH with -prof gc) to get the allocation rate next to the
+* throughput.
+* </p>
+*/
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StepBenchmark {
+
+	@State(Scope.Thread)
+	public static class EngineState {
+		@Param({ "64", "256", "1024", "4096", "16384" })
+		int size;
+
+		@Param({ "0.05", "0.3", "0.5" })
+		double density;
+
+		@Param({ "int", "bit" })
+		String engine;
+
+		Runnable step;
+
+		@Setup
+		public void setUp() throws Throwable {
+			step = Boards.action(Boards.soup(engine, size, density, 42), "step");
+		}
+	}
+
+	// countAliveNeighbours only exists on Board, so it gets its own state without the engine parameter
+	@State(Scope.Thread)
+	public static class BoardState {
+		@Param({ "64", "256", "1024", "4096", "16384" })
+		int size;
+
+		@Param({ "0.05", "0.3", "0.5" })
+		double density;
+
+		IntBinaryOperator countAliveNeighbours;
+
+		@Setup
+		public void setUp() throws Throwable {
+			countAliveNeighbours = Boards.cellFunction(Boards.soup("int", size, density, 42), "countAliveNeighbours");
+		}
+	}
+
+	// One generation; the board keeps evolving across invocations like a real run
+	@Benchmark
+	public void step(EngineState state) {
+		state.step.run();
+	}
+
+	// Neighbour counts of every cell of the board, without applying the rules
+	@Benchmark
+	public void countAliveNeighbours(BoardState state, Blackhole bh) {
+		IntBinaryOperator count = state.countAliveNeighbours;
+		int size = state.size;
+		int total = 0;
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				total += count.applyAsInt(x, y);
+			}
+		}
+		bh.consume(total);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(StepBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
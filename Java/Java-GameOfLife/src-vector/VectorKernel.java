@@ -0,0 +1,120 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+* <p>
+* Board kernel on the incubating Java Vector API. Board stores each column
+* board[x] as a contiguous int[], so a vector of cells down a column has its
+* eight neighbour vectors at offsets y - 1, y and y + 1 of columns x - 1, x
+* and x + 1. Those are added lane-wise and the rule is applied by shifting
+* the birth or survival mask right by the count in every lane, one whole
+* vector of cells per iteration.
+* </p>
+*
+* The first and last row of every column and the remainder that does not fill
+* a vector are computed with scalar code. Board loads this class by name only
+* when the jdk.incubator.vector module is present; compile and run it with
+* --add-modules jdk.incubator.vector.
+*/
+
+public class VectorKernel implements ColumnKernel {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	private final int width;
+	private final int height;
+
+	// Rule masks as in Board, bit n set when a cell with n live neighbours is alive next
+	private final int birthMask;
+	private final int survivalMask;
+
+	// Stands in for the columns left of x = 0 and right of x = width - 1
+	private final int[] emptyColumn;
+
+	public VectorKernel(int width, int height, int birthMask, int survivalMask) {
+		this.width = width;
+		this.height = height;
+		this.birthMask = birthMask;
+		this.survivalMask = survivalMask;
+		this.emptyColumn = new int[height];
+	}
+
+	public long step(int[][] board, int[][] next, int x0, int x1, long[] counts) {
+		IntVector birth = IntVector.broadcast(SPECIES, birthMask);
+		IntVector survival = IntVector.broadcast(SPECIES, survivalMask);
+		int lanes = SPECIES.length();
+		long flipped = 0;
+		long live = 0;
+		long flips = 0;
+
+		for (int x = x0; x < x1; x++) {
+			int[] left = x > 0 ? board[x - 1] : emptyColumn;
+			int[] mid = board[x];
+			int[] right = x < width - 1 ? board[x + 1] : emptyColumn;
+			int[] out = next[x];
+
+			flipped ^= scalarCell(left, mid, right, out, x, 0, counts);
+
+			// Live cells of the vector loop, summed lane by lane and reduced once per column
+			IntVector liveLanes = IntVector.zero(SPECIES);
+			int y = 1;
+			// Every vector reads rows y - 1 to y + lanes, which must stay below height
+			for (; y + lanes < height; y += lanes) {
+				IntVector count = IntVector.fromArray(SPECIES, left, y - 1)
+						.add(IntVector.fromArray(SPECIES, left, y))
+						.add(IntVector.fromArray(SPECIES, left, y + 1))
+						.add(IntVector.fromArray(SPECIES, mid, y - 1))
+						.add(IntVector.fromArray(SPECIES, mid, y + 1))
+						.add(IntVector.fromArray(SPECIES, right, y - 1))
+						.add(IntVector.fromArray(SPECIES, right, y))
+						.add(IntVector.fromArray(SPECIES, right, y + 1));
+				IntVector alive = IntVector.fromArray(SPECIES, mid, y);
+
+				IntVector state = birth.blend(survival, alive.eq(1))
+						.lanewise(VectorOperators.LSHR, count)
+						.and(1);
+				state.intoArray(out, y);
+				liveLanes = liveLanes.add(state);
+
+				// Keys and flips are only folded in, lane by lane, when some cell of the vector flipped
+				if (state.lanewise(VectorOperators.XOR, alive).reduceLanes(VectorOperators.OR) != 0) {
+					for (int i = y, end = y + lanes; i < end; i++) {
+						int flip = out[i] ^ mid[i];
+						flipped ^= Zobrist.cellKey(x, i) & -(long) flip;
+						flips += flip;
+					}
+				}
+			}
+			for (; y < height; y++) {
+				flipped ^= scalarCell(left, mid, right, out, x, y, counts);
+			}
+			live += liveLanes.reduceLanes(VectorOperators.ADD);
+		}
+		counts[0] += live;
+		counts[1] += flips;
+		return flipped;
+	}
+
+	// One cell with explicit bounds on y, for the rows the vector loop does not cover
+	private long scalarCell(int[] left, int[] mid, int[] right, int[] out, int x, int y, long[] counts) {
+		if (y >= height) {
+			return 0;
+		}
+		int count = left[y] + right[y];
+		if (y > 0) {
+			count += left[y - 1] + mid[y - 1] + right[y - 1];
+		}
+		if (y < height - 1) {
+			count += left[y + 1] + mid[y + 1] + right[y + 1];
+		}
+		int state = ((mid[y] == 1 ? survivalMask : birthMask) >>> count) & 1;
+		out[y] = state;
+		counts[0] += state;
+		if (state == mid[y]) {
+			return 0;
+		}
+		counts[1]++;
+		return Zobrist.cellKey(x, y);
+	}
+}
@@ -0,0 +1,68 @@
+import java.lang.management.ManagementFactory;
+
+/**
+* <p>
+* Measures heap allocation of the current thread with the HotSpot
+* ThreadMXBean counters. Used to check that stepping a board does not create
+* garbage once the JIT has warmed up.
+* </p>
+*/
+
+public class AllocationMeter {
+
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	private AllocationMeter() {
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+			if (hotspot.isThreadAllocatedMemorySupported()) {
+				hotspot.setThreadAllocatedMemoryEnabled(true);
+				return hotspot;
+			}
+		}
+		return null;
+	}
+
+	// Returns true when this JVM can count allocated bytes per thread
+	public static boolean isSupported() {
+		return THREADS != null;
+	}
+
+	// Bytes allocated by the current thread so far
+	public static long allocatedBytes() {
+		if (THREADS == null) {
+			throw new UnsupportedOperationException("Per-thread allocation counting is not available on this JVM");
+		}
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	// This method runs the action the given number of times and returns the bytes allocated per run
+
+	public static double bytesPerRun(Runnable action, int runs) {
+		// The first reading can allocate while the counter initialises, so take one before measuring
+		allocatedBytes();
+		long before = allocatedBytes();
+		for (int i = 0; i < runs; i++) {
+			action.run();
+		}
+		long after = allocatedBytes();
+		return (double) (after - before) / runs;
+	}
+
+	// This method warms the action up and throws if it still allocates afterwards
+
+	public static void assertNoAllocation(String name, Runnable action, int warmupRuns, int runs) {
+		for (int i = 0; i < warmupRuns; i++) {
+			action.run();
+		}
+		double perRun = bytesPerRun(action, runs);
+		// A single reading of the counter may cost a few bytes, anything below one byte per run is noise
+		if (perRun >= 1.0) {
+			throw new IllegalStateException(name + " allocated " + perRun + " bytes per run");
+		}
+	}
+}
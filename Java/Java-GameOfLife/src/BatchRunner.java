@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+* <p>
+* Batch runner for parameter sweeps. For every density it simulates a number
+* of independent random soups, each on its own board with its own seed, until
+* the board dies out or settles into a cycle or the generation limit is hit.
+* Boards are spread over a work-stealing ForkJoinPool by splitting the range
+* of board numbers in halves, so idle workers take over the unfinished halves
+* of busy ones.
+* </p>
+*
+* A board lives only while its worker simulates it: as soon as it finishes,
+* one CSV row with its statistics is written and the board is dropped, so
+* memory does not grow with the number of boards. Rows arrive in completion
+* order; the board column identifies them.
+*/
+
+public class BatchRunner {
+
+	// Longest period looked for when --detect-cycles is not given
+	static final int DEFAULT_MAX_PERIOD = 64;
+
+	static final String HEADER = "board,density,seed,outcome,lifetime,period,final_population,generations";
+
+	private final Options options;
+	private final double[] densities;
+	private final int maxPeriod;
+	private final Writer out;
+
+	public BatchRunner(Options options, Writer out) {
+		this.options = options;
+		this.densities = options.densities != null ? options.densities : new double[] { options.fill };
+		this.maxPeriod = options.detectCycles > 0 ? options.detectCycles : DEFAULT_MAX_PERIOD;
+		this.out = out;
+	}
+
+	// This method simulates every board on a pool of options.workers threads, writes the CSV and
+	// returns the number of boards
+
+	public long run() throws IOException {
+		long total = (long) densities.length * options.boards;
+		out.write(HEADER);
+		out.write('\n');
+
+		ForkJoinPool pool = new ForkJoinPool(options.workers);
+		try {
+			pool.invoke(new BoardRange(0, total));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+		out.flush();
+		return total;
+	}
+
+	// This method runs board number index and returns its CSV row
+
+	String simulate(long index) {
+		double density = densities[(int) (index / options.boards)];
+		long seed = options.seed + index;
+
+		LifeBoard board = Main.createBoard(options, options.height, options.width);
+		if (options.rule != null) {
+			board.setRule(options.rule);
+		}
+		RandomSoup.fill(board, density, seed);
+
+		CycleDetector cycles = new CycleDetector(maxPeriod);
+		long generation = 0;
+		boolean settled = cycles.observe(generation, board);
+		while (!settled && generation < options.generations) {
+			board.step();
+			generation++;
+			settled = cycles.observe(generation, board);
+		}
+
+		StringBuilder row = new StringBuilder(64);
+		row.append(index).append(',')
+				.append(density).append(',')
+				.append(seed).append(',');
+		if (settled) {
+			CycleDetector.Kind kind = cycles.getKind();
+			row.append(kind.name().toLowerCase()).append(',')
+					.append(cycles.getStartGeneration()).append(',')
+					.append(kind == CycleDetector.Kind.EXTINCT ? 0 : cycles.getPeriod());
+		} else {
+			// Still changing at the limit, the lifetime is at least the generations run
+			row.append("unsettled,").append(generation).append(',');
+		}
+		row.append(',').append(board.getPopulation())
+				.append(',').append(generation)
+				.append('\n');
+		return row.toString();
+	}
+
+	private void write(String row) {
+		synchronized (out) {
+			try {
+				out.write(row);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	// Boards from (inclusive) to (exclusive), split in halves until one board is left
+	private class BoardRange extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long from;
+		private final long to;
+
+		BoardRange(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (to > from) {
+					write(simulate(from));
+				}
+				return;
+			}
+			long middle = (from + to) >>> 1;
+			invokeAll(new BoardRange(from, middle), new BoardRange(middle, to));
+		}
+	}
+}
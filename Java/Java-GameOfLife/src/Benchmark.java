@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+
+/**
+* <p>
+* Headless runner for measuring raw simulation speed. It advances a board for
+* a fixed number of generations or for a fixed time with no rendering and no
+* sleep, then reports generations per second, cell updates per second, bytes
+* allocated per generation and the final population. With --history every
+* measured generation is also recorded in a GenerationHistory, whose size and
+* seek time are reported too, and with --checkpoint-dir the checkpoints
+* written and what they cost the loop. With --export the frames streamed
+* out and dropped are reported as well.
+* </p>
+*
+* Cell updates are counted as width x height per generation for every engine,
+* so the sparse and hashlife engines are compared by the dense work they
+* replace over the same window.
+*/
+
+public class Benchmark {
+
+	private Benchmark() {
+	}
+
+	// This method runs the headless benchmark described by options on board, which is at generation,
+	// and prints one report. checkpoints is null without --checkpoint-dir and closed here
+
+	public static void run(LifeBoard board, Options options, PrintStream out, long generation,
+			Checkpointer checkpoints) {
+		for (long g = 0; g < options.warmup; g += options.jump) {
+			Main.advance(board, options.jump);
+		}
+
+		// Created after the warmup so the readings cover the measured generations only
+		SimulationMetrics metrics = SimulationMetrics.start(board, options, generation + options.warmup);
+		try {
+			measure(board, options, out, generation + options.warmup, metrics, checkpoints);
+		} finally {
+			if (metrics != null) {
+				metrics.close();
+			}
+			if (checkpoints != null) {
+				checkpoints.close();
+			}
+		}
+	}
+
+	private static void measure(LifeBoard board, Options options, PrintStream out, long first,
+			SimulationMetrics metrics, Checkpointer checkpoints) {
+		boolean countAllocation = AllocationMeter.isSupported();
+		long startBytes = countAllocation ? AllocationMeter.allocatedBytes() : 0;
+		long start = System.nanoTime();
+		long deadline = options.durationSeconds > 0
+				? start + (long) (options.durationSeconds * 1e9)
+				: Long.MAX_VALUE;
+
+		CycleDetector cycles = options.detectCycles > 0 ? new CycleDetector(options.detectCycles) : null;
+		boolean settled = cycles != null && cycles.observe(first, board);
+
+		GenerationHistory history = null;
+		if (options.history > 0) {
+			history = new GenerationHistory(board.getWidth(), board.getHeight(), options.history);
+			history.record(board, first);
+		}
+		FrameExporter exporter = FrameExporter.start(options, board);
+		if (exporter != null) {
+			offer(exporter, board, first);
+		}
+
+		long generations = 0;
+		long now = start;
+		while (!settled && generations < options.generations && now < deadline) {
+			long advanceStart = metrics != null ? System.nanoTime() : 0;
+			Main.advance(board, options.jump);
+			generations += options.jump;
+			if (metrics != null) {
+				metrics.record(board, first + generations, options.jump, advanceStart);
+			}
+			if (checkpoints != null) {
+				checkpoints.offer(board, first + generations);
+			}
+			if (history != null) {
+				history.record(board, first + generations);
+			}
+			if (exporter != null) {
+				offer(exporter, board, first + generations);
+			}
+			now = System.nanoTime();
+			settled = cycles != null && cycles.observe(first + generations, board);
+		}
+		long bytes = countAllocation ? AllocationMeter.allocatedBytes() - startBytes : -1;
+
+		double seconds = Math.max(now - start, 1) / 1e9;
+		double cellUpdates = (double) board.getWidth() * board.getHeight() * generations;
+
+		out.println("engine=" + options.engine
+				+ " kernel=" + options.kernel
+				+ " rule=" + board.getRule()
+				+ " size=" + board.getWidth() + "x" + board.getHeight()
+				+ " threads=" + options.threads
+				+ " generations=" + generations
+				+ " seconds=" + String.format("%.3f", seconds));
+		out.println("generations/s=" + String.format("%.1f", generations / seconds)
+				+ " cell-updates/s=" + String.format("%.3e", cellUpdates / seconds)
+				+ " bytes/generation=" + (bytes < 0 ? "n/a" : String.format("%.1f", (double) bytes / Math.max(generations, 1)))
+				+ " population=" + board.getPopulation());
+		if (cycles != null) {
+			out.println(cycles.report());
+		}
+		if (history != null) {
+			out.println(historyReport(history, board));
+		}
+		if (checkpoints != null) {
+			checkpoints.close();
+			out.println(checkpoints.report());
+		}
+		if (exporter != null) {
+			try {
+				exporter.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			out.println(exporter.report());
+		}
+	}
+
+	// Nothing interrupts a headless run; if something does, the frame is skipped and the interrupt kept
+	private static void offer(FrameExporter exporter, LifeBoard board, long generation) {
+		try {
+			exporter.offer(board, generation);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// This method describes the size of the history against a full bitmap per frame, and the time to
+	// seek the frame furthest from any keyframe near its middle
+
+	private static String historyReport(GenerationHistory history, LifeBoard board) {
+		int frames = history.getFrameCount();
+		int interval = history.getKeyframeInterval();
+		int frame = Math.min(frames / 2 / interval * interval + interval - 1, frames - 1);
+		long generation = history.getFirstGeneration()
+				+ (history.getLastGeneration() - history.getFirstGeneration()) / Math.max(frames - 1, 1) * frame;
+
+		int seeks = 20;
+		long start = System.nanoTime();
+		for (int i = 0; i < seeks; i++) {
+			history.seek(generation);
+		}
+		double seekMicros = (System.nanoTime() - start) / 1e3 / seeks;
+
+		long bitmapBytes = ((long) board.getWidth() * board.getHeight() + 7) / 8 * frames;
+		return "history frames=" + frames
+				+ " keyframe-interval=" + interval
+				+ " bytes=" + history.getStoredBytes()
+				+ " bytes/frame=" + String.format("%.1f", (double) history.getStoredBytes() / frames)
+				+ " of-bitmaps=" + String.format("%.1f%%", 100.0 * history.getStoredBytes() / bitmapBytes)
+				+ " seek-us=" + String.format("%.1f", seekMicros);
+	}
+}
@@ -0,0 +1,249 @@
+/**
+* <p>
+* Bit-packed Game of Life board. Every row is stored as a run of 64-bit words
+* where bit (x &amp; 63) of word (x &gt;&gt;&gt; 6) is the cell at column x, so a
+* board takes one bit per cell instead of one int.
+* </p>
+* <p>
+* step() computes 64 cells at a time: the eight neighbour bit-planes of a word
+* are built with shifts and handed to BitRule, which adds them with bitwise
+* full adders and applies the rule with no per-cell branches.
+* </p>
+*/
+
+public class BitBoard implements LifeBoard, StateHash, CellChurn, Checkpointable {
+
+	private final int width;
+	private final int height;
+
+	// Number of 64-bit words in one row
+	private final int words;
+
+	// Mask of the valid bits in the last word of every row
+	private final long lastMask;
+
+	// Row y occupies cells[y * words] .. cells[y * words + words - 1]
+	long[] cells;
+
+	// Buffer the next generation is written to before it is swapped with cells
+	private long[] next;
+
+	// Generation pinned by freeze() until its view is released, and the buffer step() writes to
+	// instead when next is the pinned one
+	private volatile long[] frozen;
+	private long[] spare;
+
+	// Zobrist hash of the live cells, updated only for cells that flip
+	private long stateHash;
+
+	// Live cells, and the cells born and died in all steps so far
+	private long population;
+	private long born;
+	private long died;
+
+	private Rule rule = Rule.CONWAY;
+	private BitRule bitRule = new BitRule(Rule.CONWAY);
+
+	public BitBoard(int height, int width) {
+		/*
+		 * Constructor to create an empty board with height and width
+		 */
+		this.width = width;
+		this.height = height;
+		this.words = (width + 63) >>> 6;
+		this.lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+		this.cells = new long[words * height];
+		this.next = new long[words * height];
+	}
+
+	public void setAlive(int x, int y) {
+		int i = y * words + (x >>> 6);
+		if ((cells[i] & (1L << x)) == 0) {
+			stateHash ^= Zobrist.cellKey(x, y);
+			population++;
+		}
+		cells[i] |= 1L << x;
+	}
+
+	public void setDead(int x, int y) {
+		int i = y * words + (x >>> 6);
+		if ((cells[i] & (1L << x)) != 0) {
+			stateHash ^= Zobrist.cellKey(x, y);
+			population--;
+		}
+		cells[i] &= ~(1L << x);
+	}
+
+	public int getState(int x, int y) {
+		if (x < 0 || x >= width) {
+			return 0;
+		}
+
+		if (y < 0 || y >= height) {
+			return 0;
+		}
+
+		return (int) (cells[y * words + (x >>> 6)] >>> x) & 1;
+	}
+
+	// This method computes the next generation one 64-cell word at a time
+
+	public void step() {
+		if (this.next == frozen) {
+			long[] pinned = this.next;
+			this.next = spare != null ? spare : new long[cells.length];
+			spare = pinned;
+		}
+		long[] next = this.next;
+		BitRule bitRule = this.bitRule;
+		long hash = stateHash;
+		long born = 0;
+		long died = 0;
+
+		for (int y = 0; y < height; y++) {
+			int row = y * words;
+			int above = y > 0 ? row - words : -1;
+			int below = y < height - 1 ? row + words : -1;
+
+			for (int w = 0; w < words; w++) {
+				long n = word(above, w);
+				long c = cells[row + w];
+				long s = word(below, w);
+
+				// Bit x of the west plane is the cell at x - 1, the east plane is x + 1
+				long nw = (n << 1) | (word(above, w - 1) >>> 63);
+				long ne = (n >>> 1) | (word(above, w + 1) << 63);
+				long cw = (c << 1) | (word(row, w - 1) >>> 63);
+				long ce = (c >>> 1) | (word(row, w + 1) << 63);
+				long sw = (s << 1) | (word(below, w - 1) >>> 63);
+				long se = (s >>> 1) | (word(below, w + 1) << 63);
+
+				next[row + w] = bitRule.next(nw, n, ne, cw, c, ce, sw, s, se);
+			}
+			next[row + words - 1] &= lastMask;
+
+			// Fold the cells that flipped in this row into the hash and the counts
+			for (int w = 0; w < words; w++) {
+				long flips = next[row + w] ^ cells[row + w];
+				born += Long.bitCount(flips & next[row + w]);
+				died += Long.bitCount(flips & cells[row + w]);
+				while (flips != 0) {
+					hash ^= Zobrist.cellKey((w << 6) + Long.numberOfTrailingZeros(flips), y);
+					flips &= flips - 1;
+				}
+			}
+		}
+		stateHash = hash;
+		this.born += born;
+		this.died += died;
+		population += born - died;
+
+		this.next = this.cells;
+		this.cells = next;
+	}
+
+	// This method pins the current generation for a checkpoint, see Checkpointable
+
+	public FrozenRows freeze() {
+		if (frozen != null) {
+			throw new IllegalStateException("A generation is already frozen");
+		}
+		final long[] pinned = cells;
+		frozen = pinned;
+		return new FrozenRows() {
+			public void copyRow(int y, long[] row) {
+				System.arraycopy(pinned, y * words, row, 0, words);
+			}
+
+			public void release() {
+				frozen = null;
+			}
+		};
+	}
+
+	// This method loads a checkpoint of the same size, rows are copied whole and the counts come from its header
+
+	public void restore(Checkpoint checkpoint) {
+		long[] row = new long[words];
+		long hash = 0;
+		long population = 0;
+		for (int y = 0; y < height; y++) {
+			checkpoint.readRow(y, row);
+			System.arraycopy(row, 0, cells, y * words, words);
+			for (int w = 0; w < words; w++) {
+				population += Long.bitCount(row[w]);
+				if (!checkpoint.hasStateHash()) {
+					for (long bits = row[w]; bits != 0; bits &= bits - 1) {
+						hash ^= Zobrist.cellKey((w << 6) + Long.numberOfTrailingZeros(bits), y);
+					}
+				}
+			}
+		}
+		this.stateHash = checkpoint.hasStateHash() ? checkpoint.getStateHash() : hash;
+		this.population = population;
+		this.born = checkpoint.getBornCount();
+		this.died = checkpoint.getDiedCount();
+	}
+
+	// This method changes the rule the board evolves by
+
+	public void setRule(Rule rule) {
+		this.rule = rule;
+		this.bitRule = new BitRule(rule);
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	// Word w of the row starting at index row, or 0 when it lies off the board
+	private long word(int row, int w) {
+		if (row < 0 || w < 0 || w >= words) {
+			return 0L;
+		}
+		return cells[row + w];
+	}
+
+	public void print() {
+		Board.clearConsole();
+		StringBuilder line = new StringBuilder(width + 2);
+		for (int y = 0; y < height; y++) {
+			line.setLength(0);
+			line.append(' ');
+			for (int x = 0; x < width; x++) {
+				line.append(getState(x, y) == 0 ? ' ' : '#');
+			}
+			line.append(' ');
+			System.out.println(line);
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	public long getPopulation() {
+		return population;
+	}
+
+	public long getBornCount() {
+		return born;
+	}
+
+	public long getDiedCount() {
+		return died;
+	}
+
+	public void setChurn(long born, long died) {
+		this.born = born;
+		this.died = died;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+* <p>
+* A rule applied to 64 cells at once, shared by the bit-packed engines. The
+* eight neighbour bit-planes of a word are added with bitwise full adders
+* and the rule is applied to the resulting count bits, with no per-cell
+* branches. Conway's rule has its own three-operation expression; any other
+* rule is matched against the neighbour counts it names, one bitwise
+* comparison per count.
+* </p>
+*/
+
+final class BitRule {
+
+	private final boolean conway;
+
+	// For each neighbour count named by the rule its 4 count bits as all-zero or all-one words at
+	// countBits[4 * i] .. countBits[4 * i + 3], plus whether a dead cell is born and a live cell
+	// survives with that count
+	private final long[] countBits;
+	private final long[] bornIf;
+	private final long[] survivesIf;
+
+	BitRule(Rule rule) {
+		this.conway = rule.isConway();
+		int named = rule.getBirthMask() | rule.getSurvivalMask();
+		int n = Integer.bitCount(named);
+		countBits = new long[n << 2];
+		bornIf = new long[n];
+		survivesIf = new long[n];
+		int i = 0;
+		for (int count = 0; count <= 8; count++) {
+			if ((named & (1 << count)) == 0) {
+				continue;
+			}
+			for (int k = 0; k < 4; k++) {
+				countBits[(i << 2) + k] = -((count >>> k) & 1);
+			}
+			bornIf[i] = -((rule.getBirthMask() >>> count) & 1);
+			survivesIf[i] = -((rule.getSurvivalMask() >>> count) & 1);
+			i++;
+		}
+	}
+
+	// This method returns the next state of the 64 cells in c. Bit x of nw, n and ne is the
+	// neighbour of cell x above-left, above and above-right of it, and likewise for the others
+
+	long next(long nw, long n, long ne, long cw, long c, long ce, long sw, long s, long se) {
+		// Row above and row below through full adders, the middle row through a half adder
+		long aSum = nw ^ n ^ ne;
+		long aCarry = (nw & n) | (ne & (nw ^ n));
+		long bSum = sw ^ s ^ se;
+		long bCarry = (sw & s) | (se & (sw ^ s));
+		long mSum = cw ^ ce;
+		long mCarry = cw & ce;
+
+		// Combine the weight-1 bits
+		long ones = aSum ^ bSum ^ mSum;
+		long onesCarry = (aSum & bSum) | (mSum & (aSum ^ bSum));
+
+		// Combine the four weight-2 bits
+		long t = aCarry ^ bCarry ^ mCarry;
+		long tCarry = (aCarry & bCarry) | (mCarry & (aCarry ^ bCarry));
+		long twos = t ^ onesCarry;
+
+		if (conway) {
+			// Four or more neighbours, and alive with 2 or 3 neighbours, or dead with exactly 3
+			long fours = tCarry | (t & onesCarry);
+			return ~fours & twos & (ones | c);
+		}
+		// Exact count: weight 4 and, for eight neighbours only, weight 8
+		long fours = tCarry ^ (t & onesCarry);
+		long eights = tCarry & t & onesCarry;
+		long result = 0;
+		for (int i = 0; i < bornIf.length; i++) {
+			int b = i << 2;
+			long match = ~((ones ^ countBits[b]) | (twos ^ countBits[b + 1]) | (fours ^ countBits[b + 2]) | (eights ^ countBits[b + 3]));
+			result |= match & ((c & survivesIf[i]) | (~c & bornIf[i]));
+		}
+		return result;
+	}
+}
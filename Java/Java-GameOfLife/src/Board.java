@@ -14,16 +14,87 @@
 
 
 
-public class Board {
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class Board implements LifeBoard, StateHash, CellChurn, Checkpointable {
 
 	// Default height and width of the board
 	private static final int LENGTH = 20;
 
+	// Smallest number of cells a parallel task computes before it stops splitting
+	private static final int MIN_CELLS_PER_TASK = 1 << 16;
+
 	private int width;
 	private int height;
+	// Character grid of the original API. The simulation never reads it, so it is only allocated by
+	// init(), clear() or getCells() and costs nothing on large boards
 	public char[][] cells;
 	int[][] board;
 
+	// Second buffer, step() writes the next generation here and then swaps it with board
+	int[][] next;
+
+	// Generation pinned by freeze() until its view is released, and the buffer step() writes to
+	// instead when next is the pinned one
+	private volatile int[][] frozen;
+	private int[][] spare;
+
+	// Pool for the parallel step, null when stepping on the calling thread
+	private ForkJoinPool pool;
+
+	// Side of an active-region tile in cells, 0 when every cell is recomputed each generation
+	private int tileSize;
+	private int tilesX;
+	private int tilesY;
+
+	// Tiles that changed in the last generation (or through setAlive/setDead), and the ones changing now
+	private boolean[] changed;
+	private boolean[] changing;
+
+	// Number of tiles recomputed by the last step
+	private int activeTiles;
+
+	// Zobrist hash of the live cells, updated only for cells that flip
+	private long stateHash;
+
+	// Live cells, and the cells born and died in all steps so far
+	private long population;
+	private long born;
+	private long died;
+
+	// Live and flipped cells counted by the sequential full-board step, reused every generation
+	private final long[] counts = new long[2];
+
+	// How the full-board step evaluates each cell
+	public enum Kernel {
+		// countAliveNeighbours and the if/else rules, one cell at a time
+		BRANCHING,
+		// 3x3 neighbourhood packed into 9 bits and looked up in a table built from the rule, no branches per cell
+		TABLE,
+		// VectorKernel, a whole SIMD vector of cells down a column at a time
+		VECTOR
+	}
+
+	private Kernel kernel = Kernel.BRANCHING;
+
+	// Rule the board evolves by, and its birth and survival masks: bit n is set when a dead cell
+	// (birth) or a live cell (survival) with n live neighbours is alive in the next generation
+	private Rule rule = Rule.CONWAY;
+	private int birthMask = Rule.CONWAY.getBirthMask();
+	private int survivalMask = Rule.CONWAY.getSurvivalMask();
+
+	// Next state of the centre cell for every 3x3 neighbourhood under rule. Bit 3 * row + col holds
+	// the cell at (x - 1 + col, y - 1 + row), so the centre cell is bit 4
+	private int[] nextStateTable = Rule.CONWAY.neighbourhoodTable();
+
+	// Stands in for the columns left of x = 0 and right of x = width - 1 in the table kernel
+	private int[] emptyColumn;
+
+	// Loaded by name for the vector kernel so Board still compiles and runs without jdk.incubator.vector
+	private ColumnKernel vectorKernel;
+
 
 	public final static void clearConsole() {
 		/*
@@ -73,13 +144,16 @@ public class Board {
 		this.width = width;
 		this.height = height;
 		this.board = new int[width][height];
-		init();
+		this.next = new int[width][height];
 	}
 
 	public void clear() {
 		/*
 		 * Set all cells to space characters
 		 */
+		if (cells == null) {
+			cells = new char[height][width];
+		}
 		for (int i = 0; i < height; i++) {
 			for (int j = 0; j < width; j++) {
 				cells[i][j] = ' ';
@@ -108,7 +182,12 @@ public class Board {
 	
 	public void setAlive(int x, int y) {
 		// set state into 2d array
+        if (this.board[x][y] == 0) {
+            stateHash ^= Zobrist.cellKey(x, y);
+            population++;
+        }
         this.board[x][y] = 1;
+        markChanged(x, y);
     }
 	
 	
@@ -116,7 +195,12 @@ public class Board {
 
     public void setDead(int x, int y) {
     	// set state into 2d array
+        if (this.board[x][y] != 0) {
+            stateHash ^= Zobrist.cellKey(x, y);
+            population--;
+        }
         this.board[x][y] = 0;
+        markChanged(x, y);
     }
     
     
@@ -155,37 +239,417 @@ public class Board {
     
     // This method is for current and next generation board and calculate alive neighbors
     
+    // The two buffers are swapped instead of allocating a new board, so a sequential step allocates nothing
+    
     public void step() {
-        int[][] newBoard = new int[width][height];
+        if (next == frozen) {
+            int[][] pinned = next;
+            next = spare != null ? spare : new int[width][height];
+            spare = pinned;
+            if (tileSize > 0) {
+                // Skipped tiles keep what next holds, which has to be a generation they did not change in
+                for (int x = 0; x < width; x++) {
+                    System.arraycopy(board[x], 0, next[x], 0, height);
+                }
+            }
+        }
+        int[][] newBoard = next;
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int aliveNeighbours = countAliveNeighbours(x, y);
-
-                if (getState(x, y) == 1) {
-                    if (aliveNeighbours < 2) {
-                        newBoard[x][y] = 0;
-                    } else if (aliveNeighbours == 2 || aliveNeighbours == 3) {
-                        newBoard[x][y] = 1;
-                    } else if (aliveNeighbours > 3) {
-                        newBoard[x][y] = 0;
-                    }
-                } else {
-                    if (aliveNeighbours == 3) {
-                        newBoard[x][y] = 1;
+        if (tileSize > 0) {
+            stateHash ^= stepActiveTiles(newBoard);
+        } else {
+            long[] counts = this.counts;
+            if (pool == null) {
+                counts[0] = 0;
+                counts[1] = 0;
+                stateHash ^= stepColumns(newBoard, 0, width, counts);
+            } else {
+                StepTask task = new StepTask(newBoard, 0, width);
+                pool.invoke(task);
+                stateHash ^= task.flipped;
+                counts = task.counts;
+            }
+            // Every cell was recomputed, so the live count is the new population. Flips are births plus
+            // deaths and the change in population is births minus deaths
+            long growth = counts[0] - population;
+            born += (counts[1] + growth) / 2;
+            died += (counts[1] - growth) / 2;
+            population = counts[0];
+        }
+
+        this.next = this.board;
+        this.board = newBoard;        
+    }
+    
+    
+    // This method calculates the next generation of the columns x0 (inclusive) to x1 (exclusive),
+    // adds the number of live cells in them to counts[0] and of cells that flipped to counts[1] and
+    // returns the XOR of the Zobrist keys of the cells that flipped
+    
+    private long stepColumns(int[][] newBoard, int x0, int x1, long[] counts) {
+        if (kernel == Kernel.TABLE) {
+            return stepColumnsTable(newBoard, x0, x1, counts);
+        }
+        if (kernel == Kernel.VECTOR) {
+            return vectorKernel.step(board, newBoard, x0, x1, counts);
+        }
+        long flipped = 0;
+        long live = 0;
+        long flips = 0;
+        for (int x = x0; x < x1; x++) {
+            for (int y = 0; y < height; y++) {
+                int state = nextState(x, y);
+                newBoard[x][y] = state;
+                live += state;
+                if (state != board[x][y]) {
+                    flipped ^= Zobrist.cellKey(x, y);
+                    flips++;
+                }
+            }
+           
+        }
+        counts[0] += live;
+        counts[1] += flips;
+        return flipped;
+    }
+    
+    
+    // This method is the table kernel: while walking down a column it keeps the 3x3 neighbourhood
+    // as 9 bits, shifting out the row above and shifting in the row below, and looks up the result
+    
+    private long stepColumnsTable(int[][] newBoard, int x0, int x1, long[] counts) {
+        int[] nextStateTable = this.nextStateTable;
+        long flipped = 0;
+        long live = 0;
+        long flips = 0;
+        for (int x = x0; x < x1; x++) {
+            int[] left = x > 0 ? board[x - 1] : emptyColumn;
+            int[] mid = board[x];
+            int[] right = x < width - 1 ? board[x + 1] : emptyColumn;
+            int[] out = newBoard[x];
+
+            // Rows y - 1, y and y + 1 in bits 0-2, 3-5 and 6-8
+            int window = packRow(left, mid, right, 0) << 3;
+            if (height > 1) {
+                window |= packRow(left, mid, right, 1) << 6;
+            }
+
+            int columnLive = 0;
+            int columnFlips = 0;
+            int y = 0;
+            for (; y < height - 2; y++) {
+                int state = nextStateTable[window];
+                out[y] = state;
+                // Adds the key only when the cell flipped, without a branch
+                int flip = state ^ mid[y];
+                flipped ^= Zobrist.cellKey(x, y) & -(long) flip;
+                columnLive += state;
+                columnFlips += flip;
+                window = (window >>> 3) | (packRow(left, mid, right, y + 2) << 6);
+            }
+            for (; y < height; y++) {
+                int state = nextStateTable[window];
+                out[y] = state;
+                int flip = state ^ mid[y];
+                flipped ^= Zobrist.cellKey(x, y) & -(long) flip;
+                columnLive += state;
+                columnFlips += flip;
+                window >>>= 3;
+            }
+            live += columnLive;
+            flips += columnFlips;
+        }
+        counts[0] += live;
+        counts[1] += flips;
+        return flipped;
+    }
+    
+    
+    private static int packRow(int[] left, int[] mid, int[] right, int y) {
+        return left[y] | (mid[y] << 1) | (right[y] << 2);
+    }
+    
+    
+    // This method selects how step() evaluates cells. Active-region tiles always use the branching rules.
+    // When the Vector API is not available the vector kernel falls back to the table kernel, which
+    // getKernel() then reports
+    
+    public void setKernel(Kernel kernel) {
+        if (kernel == Kernel.VECTOR && vectorKernel == null) {
+            vectorKernel = loadVectorKernel(width, height, birthMask, survivalMask);
+            if (vectorKernel == null) {
+                kernel = Kernel.TABLE;
+            }
+        }
+        if (kernel == Kernel.TABLE && emptyColumn == null) {
+            emptyColumn = new int[height];
+        }
+        this.kernel = kernel;
+    }
+    
+    public Kernel getKernel() {
+        return kernel;
+    }
+    
+    
+    // This method changes the rule the board evolves by. Every kernel reads the rule from its own
+    // precomputed masks or table, so any rule runs at the same speed as Conway's
+    
+    public void setRule(Rule rule) {
+        this.rule = rule;
+        this.birthMask = rule.getBirthMask();
+        this.survivalMask = rule.getSurvivalMask();
+        this.nextStateTable = rule.neighbourhoodTable();
+        if (vectorKernel != null) {
+            vectorKernel = loadVectorKernel(width, height, birthMask, survivalMask);
+        }
+        if (changed != null) {
+            Arrays.fill(changed, true);
+        }
+    }
+    
+    public Rule getRule() {
+        return rule;
+    }
+    
+    // True when VectorKernel is on the class path and the jdk.incubator.vector module it links against was
+    // added with --add-modules
+    public static boolean isVectorKernelAvailable() {
+        return loadVectorKernel(1, 1, Rule.CONWAY.getBirthMask(), Rule.CONWAY.getSurvivalMask()) != null;
+    }
+    
+    private static ColumnKernel loadVectorKernel(int width, int height, int birthMask, int survivalMask) {
+        // Only the class name is named here, so this compiles and runs on JDK 8. Without the module,
+        // linking VectorKernel fails with a LinkageError
+        try {
+            return (ColumnKernel) Class.forName("VectorKernel")
+                    .getConstructor(int.class, int.class, int.class, int.class)
+                    .newInstance(width, height, birthMask, survivalMask);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
+    
+    // This method returns the state of the cell (x, y) in the next generation
+    
+    private int nextState(int x, int y) {
+        int aliveNeighbours = countAliveNeighbours(x, y);
+
+        // Bit n of the mask is set when a cell with n live neighbours is alive next generation
+        int mask = getState(x, y) == 1 ? survivalMask : birthMask;
+        return (mask >>> aliveNeighbours) & 1;
+    }
+    
+    
+    // This method recomputes only the tiles that changed last generation and their neighbours.
+    // A skipped tile did not change, so the old generation left in newBoard is already correct there.
+    
+    private long stepActiveTiles(int[][] newBoard) {
+        long flipped = 0;
+        int active = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                int tile = ty * tilesX + tx;
+                changing[tile] = false;
+                if (!neighbourhoodChanged(tx, ty)) {
+                    continue;
+                }
+                active++;
+
+                int x1 = Math.min(width, (tx + 1) * tileSize);
+                int y1 = Math.min(height, (ty + 1) * tileSize);
+                boolean tileChanged = false;
+                for (int x = tx * tileSize; x < x1; x++) {
+                    for (int y = ty * tileSize; y < y1; y++) {
+                        int state = nextState(x, y);
+                        newBoard[x][y] = state;
+                        if (state != board[x][y]) {
+                            tileChanged = true;
+                            flipped ^= Zobrist.cellKey(x, y);
+                            if (state == 1) {
+                                born++;
+                                population++;
+                            } else {
+                                died++;
+                                population--;
+                            }
+                        }
                     }
                 }
+                changing[tile] = tileChanged;
+            }
+        }
 
+        boolean[] swap = changed;
+        changed = changing;
+        changing = swap;
+        activeTiles = active;
+        return flipped;
+    }
+    
+    
+    private boolean neighbourhoodChanged(int tx, int ty) {
+        for (int y = Math.max(0, ty - 1); y <= Math.min(tilesY - 1, ty + 1); y++) {
+            for (int x = Math.max(0, tx - 1); x <= Math.min(tilesX - 1, tx + 1); x++) {
+                if (changed[y * tilesX + x]) {
+                    return true;
+                }
             }
-           
         }
-        
+        return false;
+    }
+    
+    
+    private void markChanged(int x, int y) {
+        if (tileSize > 0) {
+            changed[(y / tileSize) * tilesX + x / tileSize] = true;
+        }
+    }
+    
+    
+    // This method turns on active-region stepping with square tiles of the given side, 0 turns it off.
+    // Every tile starts out dirty so the first generation is computed in full. This mode always
+    // steps on the calling thread.
+    
+    public void setTileSize(int tileSize) {
+        if (tileSize < 0) {
+            throw new IllegalArgumentException("Tile size must not be negative: " + tileSize);
+        }
+        this.tileSize = tileSize;
+        if (tileSize == 0) {
+            changed = null;
+            changing = null;
+            tilesX = 0;
+            tilesY = 0;
+            return;
+        }
+        tilesX = (width + tileSize - 1) / tileSize;
+        tilesY = (height + tileSize - 1) / tileSize;
+        changed = new boolean[tilesX * tilesY];
+        changing = new boolean[tilesX * tilesY];
+        Arrays.fill(changed, true);
+    }
+    
+    public int getTileSize() {
+        return tileSize;
+    }
+    
+    // Tiles recomputed by the last step in active-region mode
+    public int getActiveTileCount() {
+        return activeTiles;
+    }
+    
+    public int getTileCount() {
+        return tilesX * tilesY;
+    }
+    
+    
+    // Splits a band of columns in half until it is small enough to compute directly
+    
+    private class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-        this.board = newBoard;        
+        private final int[][] newBoard;
+        private final int x0;
+        private final int x1;
+
+        // XOR of the Zobrist keys of the cells this task flipped, and its live and flipped cell counts
+        long flipped;
+        final long[] counts = new long[2];
+
+        StepTask(int[][] newBoard, int x0, int x1) {
+            this.newBoard = newBoard;
+            this.x0 = x0;
+            this.x1 = x1;
+        }
+
+        @Override
+        protected void compute() {
+            if (x1 - x0 < 2 || (long) (x1 - x0) * height <= MIN_CELLS_PER_TASK) {
+                flipped = stepColumns(newBoard, x0, x1, counts);
+                return;
+            }
+            int mid = (x0 + x1) >>> 1;
+            StepTask left = new StepTask(newBoard, x0, mid);
+            StepTask right = new StepTask(newBoard, mid, x1);
+            invokeAll(left, right);
+            flipped = left.flipped ^ right.flipped;
+            counts[0] = left.counts[0] + right.counts[0];
+            counts[1] = left.counts[1] + right.counts[1];
+        }
+    }
+    
+    
+    // This method sets how many threads step() uses, 1 computes every generation on the calling thread
+    
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+    
+    public int getThreads() {
+        return pool == null ? 1 : pool.getParallelism();
     }
     
     
 	
+	// This method pins the current generation for a checkpoint, see Checkpointable
+
+	public FrozenRows freeze() {
+		if (frozen != null) {
+			throw new IllegalStateException("A generation is already frozen");
+		}
+		final int[][] pinned = board;
+		frozen = pinned;
+		return new FrozenRows() {
+			public void copyRow(int y, long[] row) {
+				Arrays.fill(row, 0, (width + 63) >>> 6, 0L);
+				for (int x = 0; x < width; x++) {
+					row[x >>> 6] |= (long) pinned[x][y] << x;
+				}
+			}
+
+			public void release() {
+				frozen = null;
+			}
+		};
+	}
+
+	// This method loads a checkpoint of the same size, the counts come from its header
+
+	public void restore(Checkpoint checkpoint) {
+		long[] row = new long[(width + 63) >>> 6];
+		long hash = 0;
+		long population = 0;
+		for (int y = 0; y < height; y++) {
+			checkpoint.readRow(y, row);
+			for (int x = 0; x < width; x++) {
+				int state = (int) (row[x >>> 6] >>> x) & 1;
+				board[x][y] = state;
+				population += state;
+				if (state == 1 && !checkpoint.hasStateHash()) {
+					hash ^= Zobrist.cellKey(x, y);
+				}
+			}
+		}
+		this.stateHash = checkpoint.hasStateHash() ? checkpoint.getStateHash() : hash;
+		this.population = population;
+		this.born = checkpoint.getBornCount();
+		this.died = checkpoint.getDiedCount();
+		if (tileSize > 0) {
+			Arrays.fill(changed, true);
+		}
+	}
+
 	public int getWidth() {
 		return width;
 	}
@@ -198,11 +662,35 @@ public class Board {
 		return height;
 	}
 
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	public long getPopulation() {
+		return population;
+	}
+
+	public long getBornCount() {
+		return born;
+	}
+
+	public long getDiedCount() {
+		return died;
+	}
+
+	public void setChurn(long born, long died) {
+		this.born = born;
+		this.died = died;
+	}
+
 	public void setHeight(int height) {
 		this.height = height;
 	}
 
 	public char[][] getCells() {
+		if (cells == null) {
+			clear();
+		}
 		return cells;
 	}
 
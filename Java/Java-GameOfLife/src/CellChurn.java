@@ -0,0 +1,22 @@
+/**
+* <p>
+* Implemented by boards that count the cells their steps change. Both counts
+* only grow: they total every birth and every death in all steps since the
+* board was created, and setAlive() or setDead() never touch them. The churn
+* between two readings is their difference, however many generations apart.
+* A board restored from a checkpoint continues from the counts it was saved
+* with through setChurn().
+* </p>
+*/
+
+public interface CellChurn {
+
+	// Cells that came alive in all steps so far
+	long getBornCount();
+
+	// Cells that died in all steps so far
+	long getDiedCount();
+
+	// Sets both counts, steps from here on add to them
+	void setChurn(long born, long died);
+}
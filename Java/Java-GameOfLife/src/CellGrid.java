@@ -0,0 +1,17 @@
+/**
+* <p>
+* Read-only view of a rectangle of cells. Every LifeBoard is one, and so is a
+* Snapshot taken of it, which is what lets renderers draw either without
+* knowing which they were given.
+* </p>
+*/
+
+public interface CellGrid {
+
+	int getWidth();
+
+	int getHeight();
+
+	// Returns 1 for an alive cell and 0 for a dead or off-board cell
+	int getState(int x, int y);
+}
@@ -0,0 +1,418 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+* <p>
+* Binary snapshot of a board on disk, named checkpoint-&lt;generation&gt;.gol.
+* A 4096-byte header holds the size, generation, rule, state hash and churn
+* counts. The cells follow it packed like BitBoard, one bit per cell in
+* little-endian 64-bit words, with every row starting on a new word. Both
+* reading and writing map the file in chunks of whole rows, so the cells go
+* straight between the page cache and the board.
+* </p>
+* <p>
+* A checkpoint is written to a .tmp file and forced to disk: the cells first,
+* then the header with the CRC-32 of the cells and of itself. Only then is it
+* renamed to its final name, atomically, and the directory synced. A crash at
+* any point leaves either no file under the final name or a complete one. The
+* CRCs still catch a file torn by a file system that reorders the rename
+* before the data, and open() rejects it.
+* </p>
+*/
+
+public final class Checkpoint implements Closeable {
+
+	// "GOLCKPT" and a version byte, read as a little-endian long
+	static final long MAGIC = 0x01_54504B434C4F47L;
+	static final int HEADER_BYTES = 4096;
+
+	// Largest chunk mapped at once
+	static final long MAX_CHUNK_BYTES = 1L << 30;
+
+	private static final String PREFIX = "checkpoint-";
+	private static final String SUFFIX = ".gol";
+
+	// Bytes of the header covered by its CRC, which is stored right after them
+	private static final int FIELD_BYTES = 132;
+	private static final int RULE_BYTES = 62;
+
+	// Flags of the fields that not every board can fill in
+	private static final int HAS_STATE_HASH = 1;
+	private static final int HAS_CHURN = 2;
+
+	private final int width;
+	private final int height;
+	private final int words;
+	private final long generation;
+	private final long population;
+	private final long stateHash;
+	private final long born;
+	private final long died;
+	private final int flags;
+	private final Rule rule;
+
+	// Rows per mapped chunk, and the mapped cells of an opened checkpoint
+	private final int rowsPerChunk;
+	private FileChannel channel;
+	private MappedByteBuffer[] chunks;
+
+	private Checkpoint(int width, int height, long generation, long population, long stateHash, long born, long died,
+			int flags, Rule rule) {
+		this.width = width;
+		this.height = height;
+		this.words = (width + 63) >>> 6;
+		this.generation = generation;
+		this.population = population;
+		this.stateHash = stateHash;
+		this.born = born;
+		this.died = died;
+		this.flags = flags;
+		this.rule = rule;
+		this.rowsPerChunk = (int) Math.max(1, Math.min(height, MAX_CHUNK_BYTES / ((long) words << 3)));
+	}
+
+	// This method reads the header fields of a checkpoint of board at generation. It must run on the
+	// thread that steps the board, at the same generation that is frozen for write()
+
+	public static Checkpoint describe(LifeBoard board, long generation) {
+		int flags = 0;
+		long stateHash = 0;
+		long born = 0;
+		long died = 0;
+		if (board instanceof StateHash) {
+			stateHash = ((StateHash) board).getStateHash();
+			flags |= HAS_STATE_HASH;
+		}
+		if (board instanceof CellChurn) {
+			born = ((CellChurn) board).getBornCount();
+			died = ((CellChurn) board).getDiedCount();
+			flags |= HAS_CHURN;
+		}
+		return new Checkpoint(board.getWidth(), board.getHeight(), generation, board.getPopulation(), stateHash,
+				born, died, flags, board.getRule());
+	}
+
+	// This method writes the rows under this header into directory and returns the file. The rows are
+	// released as soon as they are copied, before the slower CRC and forcing to disk, or on failure
+
+	public Path write(Path directory, FrozenRows rows) throws IOException {
+		Path file = directory.resolve(fileName(generation));
+		Path temporary = directory.resolve(fileName(generation) + ".tmp");
+		boolean released = false;
+		try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer[] cells = map(out, FileChannel.MapMode.READ_WRITE);
+			long[] row = new long[words];
+			for (int y = 0; y < height; y++) {
+				rows.copyRow(y, row);
+				ByteBuffer chunk = cells[y / rowsPerChunk];
+				int offset = offset(y);
+				for (int w = 0; w < words; w++) {
+					chunk.putLong(offset + (w << 3), row[w]);
+				}
+			}
+			rows.release();
+			released = true;
+
+			CRC32 crc = new CRC32();
+			for (MappedByteBuffer chunk : cells) {
+				crc.update((ByteBuffer) chunk.duplicate().clear());
+				chunk.force();
+			}
+
+			ByteBuffer header = header((int) crc.getValue());
+			while (header.hasRemaining()) {
+				out.write(header, header.position());
+			}
+			out.force(true);
+		} finally {
+			if (!released) {
+				rows.release();
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		syncDirectory(directory);
+		return file;
+	}
+
+	// Header fields, their CRC and the padding up to HEADER_BYTES
+	private ByteBuffer header(int cellsCrc) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(MAGIC).putInt(width).putInt(height).putInt(flags).putInt(0);
+		header.putLong(generation).putLong(population).putLong(stateHash).putLong(born).putLong(died);
+		byte[] ruleText = rule.toString().getBytes(StandardCharsets.US_ASCII);
+		if (ruleText.length > RULE_BYTES) {
+			throw new IllegalArgumentException("Rule too long for a checkpoint: " + rule);
+		}
+		header.putShort((short) ruleText.length).put(ruleText);
+		header.putInt(FIELD_BYTES - 4, cellsCrc);
+
+		CRC32 crc = new CRC32();
+		crc.update(header.array(), 0, FIELD_BYTES);
+		header.putInt(FIELD_BYTES, (int) crc.getValue());
+		header.clear();
+		return header;
+	}
+
+	// This method opens a checkpoint and checks it completely, cells included, before returning it
+
+	public static Checkpoint open(Path file) throws IOException {
+		FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if (in.size() < HEADER_BYTES) {
+				throw new IOException("Too short for a checkpoint: " + in.size() + " bytes");
+			}
+			ByteBuffer header = ByteBuffer.allocate(FIELD_BYTES + 4).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (in.read(header, header.position()) < 0) {
+					throw new IOException("Header ends early");
+				}
+			}
+			if (header.getLong(0) != MAGIC) {
+				throw new IOException("Not a checkpoint of this version");
+			}
+			CRC32 crc = new CRC32();
+			crc.update(header.array(), 0, FIELD_BYTES);
+			if ((int) crc.getValue() != header.getInt(FIELD_BYTES)) {
+				throw new IOException("Header CRC mismatch");
+			}
+
+			header.position(8);
+			int width = header.getInt();
+			int height = header.getInt();
+			int flags = header.getInt();
+			header.getInt();
+			long generation = header.getLong();
+			long population = header.getLong();
+			long stateHash = header.getLong();
+			long born = header.getLong();
+			long died = header.getLong();
+			byte[] ruleText = new byte[header.getShort()];
+			header.get(ruleText);
+			Rule rule;
+			try {
+				rule = Rule.parse(new String(ruleText, StandardCharsets.US_ASCII));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Bad rule in header", e);
+			}
+			if (width <= 0 || height <= 0) {
+				throw new IOException("Bad size in header: " + width + "x" + height);
+			}
+
+			Checkpoint checkpoint = new Checkpoint(width, height, generation, population, stateHash, born, died,
+					flags, rule);
+			long expected = HEADER_BYTES + (long) height * checkpoint.words * 8;
+			if (in.size() != expected) {
+				throw new IOException("Size is " + in.size() + " bytes, the header needs " + expected);
+			}
+			checkpoint.channel = in;
+			checkpoint.chunks = checkpoint.map(in, FileChannel.MapMode.READ_ONLY);
+
+			crc.reset();
+			for (MappedByteBuffer chunk : checkpoint.chunks) {
+				crc.update((ByteBuffer) chunk.duplicate().clear());
+			}
+			if ((int) crc.getValue() != header.getInt(FIELD_BYTES - 4)) {
+				throw new IOException("Cell CRC mismatch");
+			}
+			return checkpoint;
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	// This method returns the newest checkpoint in directory that opens cleanly, or null when there is
+	// none. Every newer one that fails the checks is reported on log and skipped
+
+	public static Checkpoint findLatest(Path directory, PrintStream log) throws IOException {
+		for (Path file : list(directory)) {
+			try {
+				return open(file);
+			} catch (IOException e) {
+				log.println("Skipping " + file + ": " + e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	// This method deletes all but the newest keep checkpoints in directory, and any .tmp file left by
+	// a write that never finished. Only the single writer may call it
+
+	public static void prune(Path directory, int keep) throws IOException {
+		List<Path> files = list(directory);
+		for (int i = keep; i < files.size(); i++) {
+			Files.deleteIfExists(files.get(i));
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX + ".tmp")) {
+			for (Path file : stream) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	// Checkpoint files in directory, newest first
+	private static List<Path> list(Path directory) throws IOException {
+		List<Path> files = new ArrayList<>();
+		if (!Files.isDirectory(directory)) {
+			return files;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path file : stream) {
+				if (generationOf(file) >= 0) {
+					files.add(file);
+				}
+			}
+		}
+		files.sort(Collections.reverseOrder((a, b) -> Long.compare(generationOf(a), generationOf(b))));
+		return files;
+	}
+
+	// Generation in the name of a checkpoint file, or -1 when the name is not one
+	private static long generationOf(Path file) {
+		String name = file.getFileName().toString();
+		String digits = name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+		if (digits.isEmpty() || digits.length() > 18 || !digits.chars().allMatch(Character::isDigit)) {
+			return -1;
+		}
+		return Long.parseLong(digits);
+	}
+
+	// Zero-padded so the files also sort by generation in a directory listing
+	static String fileName(long generation) {
+		return PREFIX + String.format("%012d", generation) + SUFFIX;
+	}
+
+	private static void syncDirectory(Path directory) {
+		try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+			dir.force(true);
+		} catch (IOException e) {
+			// Not every platform can open or sync a directory; the rename is durable on the next sync
+		}
+	}
+
+	private MappedByteBuffer[] map(FileChannel file, FileChannel.MapMode mode) throws IOException {
+		MappedByteBuffer[] mapped = new MappedByteBuffer[(height + rowsPerChunk - 1) / rowsPerChunk];
+		long position = HEADER_BYTES;
+		for (int i = 0; i < mapped.length; i++) {
+			long size = (long) Math.min(rowsPerChunk, height - i * rowsPerChunk) * words * 8;
+			mapped[i] = file.map(mode, position, size);
+			mapped[i].order(ByteOrder.LITTLE_ENDIAN);
+			position += size;
+		}
+		return mapped;
+	}
+
+	// Byte offset of row y inside its chunk
+	private int offset(int y) {
+		return (y % rowsPerChunk) * (words << 3);
+	}
+
+	// This method copies row y of an opened checkpoint into the first (width + 63) / 64 words of row
+
+	public void readRow(int y, long[] row) {
+		ByteBuffer chunk = chunks[y / rowsPerChunk];
+		int offset = offset(y);
+		for (int w = 0; w < words; w++) {
+			row[w] = chunk.getLong(offset + (w << 3));
+		}
+	}
+
+	// This method loads the cells, rule and churn counts into an empty board of the same size.
+	// Checkpointable boards take the rows whole, the others are set one live cell at a time
+
+	public void restore(LifeBoard board) {
+		if (board.getWidth() != width || board.getHeight() != height) {
+			throw new IllegalArgumentException("Board is " + board.getWidth() + "x" + board.getHeight()
+					+ ", the checkpoint holds " + width + "x" + height);
+		}
+		if (board instanceof Checkpointable) {
+			((Checkpointable) board).restore(this);
+		} else {
+			long[] row = new long[words];
+			for (int y = 0; y < height; y++) {
+				readRow(y, row);
+				for (int w = 0; w < words; w++) {
+					for (long bits = row[w]; bits != 0; bits &= bits - 1) {
+						board.setAlive((w << 6) + Long.numberOfTrailingZeros(bits), y);
+					}
+				}
+			}
+		}
+		if (board instanceof CellChurn) {
+			// Every engine carries the counts on, not only the Checkpointable ones
+			((CellChurn) board).setChurn(born, died);
+		}
+		board.setRule(rule);
+	}
+
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+			chunks = null;
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public long getPopulation() {
+		return population;
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	// False when the board written had no StateHash, restore() then has to hash the cells itself
+	public boolean hasStateHash() {
+		return (flags & HAS_STATE_HASH) != 0;
+	}
+
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	// False when the board written did not count churn, restore() then starts the counts at zero
+	public boolean hasChurn() {
+		return (flags & HAS_CHURN) != 0;
+	}
+
+	public long getBornCount() {
+		return born;
+	}
+
+	public long getDiedCount() {
+		return died;
+	}
+
+	// Bytes of a checkpoint file of this size
+	public long getFileBytes() {
+		return HEADER_BYTES + (long) height * words * 8;
+	}
+}
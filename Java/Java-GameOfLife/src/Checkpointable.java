@@ -0,0 +1,23 @@
+/**
+* <p>
+* Boards that can pin their current generation for a checkpoint without
+* copying it. While a generation is pinned, step() never writes to its buffer
+* and uses a spare one instead, so the writer reads it at leisure and the
+* step loop only pays for the pointer swap. The spare is allocated by the
+* first step that needs it and kept for the next checkpoint.
+* </p>
+*
+* restore() is the other direction: it loads the rows of a checkpoint and
+* takes the population, state hash and churn counts from its header instead
+* of recounting them cell by cell.
+*/
+
+public interface Checkpointable {
+
+	// This method pins the current generation until the view is released. Only one generation can
+	// be pinned at a time, and only the thread that steps the board may call it
+	FrozenRows freeze();
+
+	// This method replaces every cell with those of the checkpoint, which has the size of the board
+	void restore(Checkpoint checkpoint);
+}
@@ -0,0 +1,145 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+* <p>
+* Periodic checkpoints of a running board on a background writer thread. The
+* loop that advances the board calls offer() after every advance; once
+* --checkpoint-every generations have passed since the last checkpoint, the
+* board is frozen and a Checkpoint of it is written while the loop goes on.
+* Checkpointable boards are pinned without a copy. Any other board is copied
+* into packed rows first, which does stall the loop for one pass over it.
+* </p>
+*
+* There is never more than one checkpoint in flight. A checkpoint that comes
+* due while the previous one is still writing waits for the next advance, so
+* a slow disk delays checkpoints instead of the simulation. After every write
+* all but the newest --checkpoint-keep files are deleted.
+*/
+
+public class Checkpointer implements Closeable {
+
+	private final Path directory;
+	private final long interval;
+	private final int keep;
+	private final PrintStream log;
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "checkpoint-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private long lastGeneration;
+	private Future<?> inFlight;
+
+	// Totals for report(), read after close(). The last three are written by the writer thread
+	private long written;
+	private long deferred;
+	private long freezeNanos;
+	private long failed;
+	private long writeNanos;
+	private long writtenBytes;
+
+	public Checkpointer(Path directory, long interval, int keep, long generation, PrintStream log) throws IOException {
+		this.directory = directory;
+		this.interval = interval;
+		this.keep = keep;
+		this.lastGeneration = generation;
+		this.log = log;
+		Files.createDirectories(directory);
+	}
+
+	// This method creates the checkpointer asked for by --checkpoint-dir for a run starting at generation,
+	// or returns null without it
+
+	public static Checkpointer start(Options options, long generation) throws IOException {
+		if (options.checkpointDir == null) {
+			return null;
+		}
+		return new Checkpointer(options.checkpointDir, options.checkpointEvery, options.checkpointKeep, generation,
+				System.err);
+	}
+
+	// This method starts a checkpoint of board when one is due and none is being written. Only the
+	// thread that advances the board may call it, right after an advance to generation
+
+	public void offer(LifeBoard board, long generation) {
+		if (generation - lastGeneration < interval) {
+			return;
+		}
+		if (inFlight != null && !inFlight.isDone()) {
+			deferred++;
+			return;
+		}
+		long start = System.nanoTime();
+		final Checkpoint checkpoint = Checkpoint.describe(board, generation);
+		final FrozenRows rows = board instanceof Checkpointable ? ((Checkpointable) board).freeze() : copy(board);
+		freezeNanos += System.nanoTime() - start;
+		lastGeneration = generation;
+		written++;
+
+		inFlight = writer.submit(() -> {
+			long writeStart = System.nanoTime();
+			try {
+				checkpoint.write(directory, rows);
+				Checkpoint.prune(directory, keep);
+				writtenBytes += checkpoint.getFileBytes();
+			} catch (IOException | RuntimeException e) {
+				failed++;
+				log.println("Checkpoint of generation " + checkpoint.getGeneration() + " failed: " + e);
+			}
+			writeNanos += System.nanoTime() - writeStart;
+		});
+	}
+
+	// Packed copy of a board that cannot be frozen
+	private static FrozenRows copy(LifeBoard board) {
+		final int width = board.getWidth();
+		final int words = (width + 63) >>> 6;
+		final long[] cells = new long[words * board.getHeight()];
+		for (int y = 0; y < board.getHeight(); y++) {
+			for (int x = 0; x < width; x++) {
+				cells[y * words + (x >>> 6)] |= (long) board.getState(x, y) << x;
+			}
+		}
+		return new FrozenRows() {
+			public void copyRow(int y, long[] row) {
+				System.arraycopy(cells, y * words, row, 0, words);
+			}
+
+			public void release() {
+				// Nothing is pinned
+			}
+		};
+	}
+
+	// This method waits for the checkpoint in flight to reach the disk and stops the writer
+
+	public void close() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Checkpoints started, deferred and failed, with the time the loop spent freezing the board and
+	// the writer spent writing. Read it after close()
+	public String report() {
+		long succeeded = written - failed;
+		return "checkpoints written=" + succeeded
+				+ " deferred=" + deferred
+				+ " failed=" + failed
+				+ " freeze-us/checkpoint=" + String.format("%.1f", written == 0 ? 0 : freezeNanos / 1e3 / written)
+				+ " write-ms/checkpoint=" + String.format("%.1f", written == 0 ? 0 : writeNanos / 1e6 / written)
+				+ " bytes/checkpoint=" + (succeeded == 0 ? 0 : writtenBytes / succeeded);
+	}
+}
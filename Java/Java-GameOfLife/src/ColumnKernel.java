@@ -0,0 +1,14 @@
+/**
+* <p>
+* Pluggable cell kernel for Board. A kernel computes the next generation of
+* the columns x0 (inclusive) to x1 (exclusive) of board into next, adds the
+* number of live cells in them to counts[0] and of cells that flipped to
+* counts[1] and returns the XOR of the Zobrist keys of the cells that flipped.
+* It must give exactly the same cells as the branching rules.
+* </p>
+*/
+
+public interface ColumnKernel {
+
+	long step(int[][] board, int[][] next, int x0, int x1, long[] counts);
+}
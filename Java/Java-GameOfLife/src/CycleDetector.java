@@ -0,0 +1,101 @@
+/**
+* <p>
+* Detects when a simulation has stopped doing anything new. It keeps the
+* state hashes of the last maxPeriod generations in a ring buffer and reports
+* extinction, a still life (period 1) or an oscillator of any period up to
+* maxPeriod, together with the first generation of the repeating cycle.
+* </p>
+*
+* Detection relies on 64-bit Zobrist hashes, so two different boards are
+* taken as equal only with negligible probability.
+*/
+
+public class CycleDetector {
+
+	public enum Kind {
+		EXTINCT, STILL_LIFE, OSCILLATOR
+	}
+
+	private final int maxPeriod;
+
+	// hashes[generation % maxPeriod] is the hash seen at that generation
+	private final long[] hashes;
+	private long observed;
+
+	private Kind kind;
+	private int period;
+	private long startGeneration;
+
+	public CycleDetector(int maxPeriod) {
+		if (maxPeriod < 1) {
+			throw new IllegalArgumentException("Largest period must be at least 1: " + maxPeriod);
+		}
+		this.maxPeriod = maxPeriod;
+		this.hashes = new long[maxPeriod];
+	}
+
+	// Records a board that implements StateHash. An empty board hashes to 0, so the population
+	// is only counted when the hash is 0 and the per-generation cost stays constant.
+
+	public boolean observe(long generation, LifeBoard board) {
+		long hash = ((StateHash) board).getStateHash();
+		return observe(generation, hash, hash == 0 ? board.getPopulation() : -1);
+	}
+
+	// This method records the board at the given generation and returns true once the run has settled.
+	// Generations must be observed one after another starting from any generation. A negative
+	// population means unknown but not zero.
+
+	public boolean observe(long generation, long hash, long population) {
+		if (kind != null) {
+			return true;
+		}
+		if (population == 0) {
+			kind = Kind.EXTINCT;
+			period = 1;
+			startGeneration = generation;
+			return true;
+		}
+
+		long available = Math.min(observed, maxPeriod);
+		for (int p = 1; p <= available; p++) {
+			if (hashes[(int) Math.floorMod(generation - p, (long) maxPeriod)] == hash) {
+				kind = p == 1 ? Kind.STILL_LIFE : Kind.OSCILLATOR;
+				period = p;
+				startGeneration = generation - p;
+				return true;
+			}
+		}
+
+		hashes[(int) Math.floorMod(generation, (long) maxPeriod)] = hash;
+		observed++;
+		return false;
+	}
+
+	// Null while the run is still changing
+	public Kind getKind() {
+		return kind;
+	}
+
+	public int getPeriod() {
+		return period;
+	}
+
+	public long getStartGeneration() {
+		return startGeneration;
+	}
+
+	public String report() {
+		if (kind == null) {
+			return "No cycle up to period " + maxPeriod + " detected";
+		}
+		switch (kind) {
+		case EXTINCT:
+			return "Extinct at generation " + startGeneration;
+		case STILL_LIFE:
+			return "Still life from generation " + startGeneration;
+		default:
+			return "Period " + period + " oscillator from generation " + startGeneration;
+		}
+	}
+}
@@ -0,0 +1,445 @@
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+* <p>
+* Coordinator of a distributed run. The board is split into horizontal strips
+* of whole rows, one per TileWorker process, and this class is the LifeBoard
+* the rest of the program talks to: cell changes are forwarded to the worker
+* that owns the row, step() tells every worker to advance and sums their
+* populations and state hashes, and nothing else crosses the wire.
+* </p>
+* <p>
+* The coordinator never keeps the board itself. Viewport captures, which is
+* what rendering and export read, prefetch() just the sampled columns and
+* rows, so only those cells cross the wire. Any other getState() after a
+* change asks every worker for its strip and assembles a one bit per cell
+* snapshot, which is then reused until the next step. Workers can be started
+* by the coordinator as child JVMs or by hand with --mode=worker, which is how
+* several JVMs on one machine are tested; either way they only talk to their
+* neighbours and to the coordinator through a Transport.
+* </p>
+*/
+
+public class DistributedBoard implements LifeBoard, StateHash, CellChurn, Prefetchable, Closeable {
+
+	// How often start() checks that the spawned workers are still running while it waits for them
+	private static final int ACCEPT_POLL_MILLIS = 250;
+
+	private final int width;
+	private final int height;
+
+	private final Transport.Link[] workers;
+
+	// Worker i owns rows firstRow[i] (inclusive) to firstRow[i + 1] (exclusive)
+	private final int[] firstRow;
+
+	private final List<Process> processes;
+
+	private Rule rule = Rule.CONWAY;
+	private long stateHash;
+	private long population;
+
+	// Sums of the workers' born and died counts
+	private long born;
+	private long died;
+
+	// Added to those sums, so setChurn() can start the counts anywhere while the workers count from zero
+	private long bornOffset;
+	private long diedOffset;
+
+	// Assembled snapshot, row y occupies snapshot[y * words] .. snapshot[y * words + words - 1]
+	private final int words;
+	private long[] snapshot;
+	private boolean snapshotValid;
+
+	// Cells fetched by prefetch(), cell (regionColumns[i], regionRows[j]) is bit i & 63 of word
+	// j * regionWords + i / 64 of region
+	private int[] regionColumns;
+	private int[] regionRows;
+	private int regionWords;
+	private long[] region;
+	private boolean regionValid;
+
+	private DistributedBoard(int height, int width, Transport.Link[] workers, int[] firstRow, List<Process> processes) {
+		this.width = width;
+		this.height = height;
+		this.workers = workers;
+		this.firstRow = firstRow;
+		this.processes = processes;
+		this.words = (width + 63) >>> 6;
+	}
+
+	// This method starts a distributed board of the given size. With spawn the worker JVMs are started
+	// here on the same class path, otherwise the method waits for that many workers to connect, for
+	// example ones started with --mode=worker --coordinator=<address>
+
+	public static DistributedBoard start(int height, int width, boolean wrap, int count, boolean spawn,
+			Transport transport) throws IOException {
+		if (count < 1 || count > height) {
+			throw new IllegalArgumentException("Need between 1 and " + height + " worker processes, not " + count);
+		}
+		List<Process> processes = new ArrayList<>();
+		try (Transport.Listener listener = transport.listen()) {
+			return start(height, width, wrap, count, spawn, listener, processes);
+		} catch (IOException | RuntimeException e) {
+			for (Process process : processes) {
+				process.destroyForcibly();
+			}
+			throw e;
+		}
+	}
+
+	private static DistributedBoard start(int height, int width, boolean wrap, int count, boolean spawn,
+			Transport.Listener listener, List<Process> processes) throws IOException {
+		if (spawn) {
+			for (int i = 0; i < count; i++) {
+				processes.add(spawnWorker(listener.address()));
+			}
+		} else {
+			System.err.println("Waiting for " + count + " workers: java -cp bin Main --mode=worker --coordinator=" + listener.address());
+		}
+
+		Transport.Link[] workers = new Transport.Link[count];
+		String[] peerAddresses = new String[count];
+		for (int i = 0; i < count; i++) {
+			workers[i] = accept(listener, processes);
+			peerAddresses[i] = workers[i].input().readUTF();
+		}
+
+		// Strips as equal as possible, the first height % count workers get one row more
+		int[] firstRow = new int[count + 1];
+		for (int i = 0; i < count; i++) {
+			firstRow[i + 1] = firstRow[i] + height / count + (i < height % count ? 1 : 0);
+		}
+		for (int i = 0; i < count; i++) {
+			boolean hasBelow = count > 1 && (wrap || i < count - 1);
+			boolean hasAbove = count > 1 && (wrap || i > 0);
+			DataOutputStream out = workers[i].output();
+			out.writeInt(count);
+			out.writeInt(width);
+			out.writeInt(firstRow[i]);
+			out.writeInt(firstRow[i + 1]);
+			out.writeBoolean(wrap);
+			out.writeUTF(hasBelow ? peerAddresses[(i + 1) % count] : "");
+			out.writeBoolean(hasAbove);
+			out.flush();
+		}
+		return new DistributedBoard(height, width, workers, firstRow, processes);
+	}
+
+	// This method waits for the next worker to connect. A spawned worker that exits first, for example
+	// on a bad class path, fails the start instead of leaving it waiting forever
+
+	private static Transport.Link accept(Transport.Listener listener, List<Process> processes) throws IOException {
+		while (true) {
+			Transport.Link link = listener.accept(ACCEPT_POLL_MILLIS);
+			if (link != null) {
+				return link;
+			}
+			for (Process process : processes) {
+				if (!process.isAlive()) {
+					throw new IOException("A worker process exited with code " + process.exitValue()
+							+ " before connecting to the coordinator");
+				}
+			}
+		}
+	}
+
+	private static Process spawnWorker(String coordinator) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"Main", "--mode=worker", "--coordinator=" + coordinator)
+				.redirectOutput(ProcessBuilder.Redirect.to(new File(isWindows() ? "NUL" : "/dev/null")))
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+	}
+
+	private static boolean isWindows() {
+		return System.getProperty("os.name").startsWith("Windows");
+	}
+
+	// Index of the worker that owns row y
+	private int owner(int y) {
+		int low = 0;
+		int high = workers.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (firstRow[mid] <= y) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	public void setAlive(int x, int y) {
+		setCell(x, y, TileWorker.SET_ALIVE);
+	}
+
+	public void setDead(int x, int y) {
+		setCell(x, y, TileWorker.SET_DEAD);
+	}
+
+	// Cell changes are only buffered, they reach the worker with the next command that needs an answer
+	private void setCell(int x, int y, byte command) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			throw new IndexOutOfBoundsException("Cell " + x + " " + y + " is outside the " + width + "x" + height + " board");
+		}
+		try {
+			DataOutputStream out = workers[owner(y)].output();
+			out.writeByte(command);
+			out.writeInt(x);
+			out.writeInt(y);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		snapshotValid = false;
+		regionValid = false;
+		// Hash and population are fetched again when they are next asked for
+		population = -1;
+	}
+
+	public int getState(int x, int y) {
+		if (x < 0 || x >= width) {
+			return 0;
+		}
+
+		if (y < 0 || y >= height) {
+			return 0;
+		}
+
+		if (regionValid) {
+			int i = Arrays.binarySearch(regionColumns, x);
+			int j = Arrays.binarySearch(regionRows, y);
+			if (i >= 0 && j >= 0) {
+				return (int) (region[j * regionWords + (i >>> 6)] >>> i) & 1;
+			}
+		}
+		if (!snapshotValid) {
+			refreshSnapshot();
+		}
+		return (int) (snapshot[y * words + (x >>> 6)] >>> x) & 1;
+	}
+
+	public void step() {
+		advance(1);
+	}
+
+	// This method advances every strip by generations in one round trip per worker
+
+	public void advance(long generations) {
+		try {
+			for (Transport.Link worker : workers) {
+				worker.output().writeByte(TileWorker.STEP);
+				worker.output().writeLong(generations);
+				worker.output().flush();
+			}
+			long hash = 0;
+			long live = 0;
+			long bornTotal = 0;
+			long diedTotal = 0;
+			for (Transport.Link worker : workers) {
+				hash ^= worker.input().readLong();
+				live += worker.input().readLong();
+				bornTotal += worker.input().readLong();
+				diedTotal += worker.input().readLong();
+			}
+			stateHash = hash;
+			population = live;
+			born = bornTotal;
+			died = diedTotal;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		snapshotValid = false;
+		regionValid = false;
+	}
+
+	// This method asks every worker for its strip and packs the whole board into snapshot
+
+	private void refreshSnapshot() {
+		if (snapshot == null) {
+			snapshot = new long[words * height];
+		}
+		byte[] packed = new byte[TileWorker.packedLength(width)];
+		try {
+			for (Transport.Link worker : workers) {
+				worker.output().writeByte(TileWorker.SNAPSHOT);
+				worker.output().flush();
+			}
+			for (int i = 0; i < workers.length; i++) {
+				DataInputStream in = workers[i].input();
+				for (int y = firstRow[i]; y < firstRow[i + 1]; y++) {
+					in.readFully(packed);
+					unpackWords(packed, snapshot, y * words, words);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		snapshotValid = true;
+	}
+
+	// This method asks every worker that owns one of rows for the cells of its rows in columns
+
+	public void prefetch(int[] columns, int[] rows) {
+		regionWords = (columns.length + 63) >>> 6;
+		if (region == null || region.length < regionWords * rows.length) {
+			region = new long[regionWords * rows.length];
+		}
+		byte[] packed = new byte[TileWorker.packedLength(columns.length)];
+		try {
+			// rows is ascending, so each worker's rows are one run of it
+			int[] runStart = new int[workers.length + 1];
+			for (int i = 0, j = 0; i < workers.length; i++) {
+				runStart[i] = j;
+				while (j < rows.length && rows[j] < firstRow[i + 1]) {
+					j++;
+				}
+				runStart[i + 1] = j;
+			}
+			for (int i = 0; i < workers.length; i++) {
+				if (runStart[i] == runStart[i + 1]) {
+					continue;
+				}
+				DataOutputStream out = workers[i].output();
+				out.writeByte(TileWorker.REGION);
+				out.writeInt(columns.length);
+				for (int x : columns) {
+					out.writeInt(x);
+				}
+				out.writeInt(runStart[i + 1] - runStart[i]);
+				for (int j = runStart[i]; j < runStart[i + 1]; j++) {
+					out.writeInt(rows[j]);
+				}
+				out.flush();
+			}
+			for (int i = 0; i < workers.length; i++) {
+				DataInputStream in = workers[i].input();
+				for (int j = runStart[i]; j < runStart[i + 1]; j++) {
+					in.readFully(packed);
+					unpackWords(packed, region, j * regionWords, regionWords);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		regionColumns = columns;
+		regionRows = rows;
+		regionValid = true;
+	}
+
+	// Copies packed bytes, 8 cells each, into words 64 cells each starting at region[offset]
+	private static void unpackWords(byte[] packed, long[] words, int offset, int count) {
+		for (int w = 0; w < count; w++) {
+			long word = 0;
+			for (int b = 0; b < 8 && (w << 3) + b < packed.length; b++) {
+				word |= (packed[(w << 3) + b] & 0xFFL) << (b << 3);
+			}
+			words[offset + w] = word;
+		}
+	}
+
+	public void setRule(Rule rule) {
+		try {
+			for (Transport.Link worker : workers) {
+				worker.output().writeByte(TileWorker.RULE);
+				worker.output().writeUTF(rule.toString());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.rule = rule;
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public void print() {
+		Board.clearConsole();
+		StringBuilder line = new StringBuilder(width + 2);
+		for (int y = 0; y < height; y++) {
+			line.setLength(0);
+			line.append(' ');
+			for (int x = 0; x < width; x++) {
+				line.append(getState(x, y) == 0 ? ' ' : '#');
+			}
+			line.append(' ');
+			System.out.println(line);
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	public long getStateHash() {
+		if (population < 0) {
+			advance(0);
+		}
+		return stateHash;
+	}
+
+	public long getPopulation() {
+		if (population < 0) {
+			advance(0);
+		}
+		return population;
+	}
+
+	public long getBornCount() {
+		return born + bornOffset;
+	}
+
+	public long getDiedCount() {
+		return died + diedOffset;
+	}
+
+	public void setChurn(long born, long died) {
+		bornOffset = born - this.born;
+		diedOffset = died - this.died;
+	}
+
+	// This method shuts the workers down and waits a little for the spawned ones to exit
+
+	public void close() throws IOException {
+		for (Transport.Link worker : workers) {
+			try {
+				worker.output().writeByte(TileWorker.SHUTDOWN);
+				worker.output().flush();
+				worker.close();
+			} catch (IOException e) {
+				// The worker is already gone
+			}
+		}
+		for (Process process : processes) {
+			try {
+				if (!process.waitFor(5, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,306 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+* <p>
+* Streams generations of a run to an animated GIF or to numbered PNG files on
+* a background thread. The loop that advances the board calls offer() after
+* every advance. Every --export-every generations a Snapshot of the whole
+* board is captured, fitted into at most --export-size characters like
+* Viewport.fit(), and queued. The exporter thread draws each character as a
+* --export-scale pixel square in one of five grey levels and encodes it. A
+* GIF is written frame by frame as a sequence, so memory stays the same
+* however long the run is.
+* </p>
+*
+* The queue holds QUEUE_FRAMES frames. When it is full, offer() waits for the
+* encoder only as long as the run stays at or above --export-rate generations
+* per second since the export started; a frame that would push it below is
+* dropped and counted instead. Without --export-rate no frame is ever dropped
+* and the simulation runs at the speed of the encoder when that is slower.
+*/
+
+public class FrameExporter implements Closeable {
+
+	// Frames captured but not yet encoded
+	static final int QUEUE_FRAMES = 8;
+
+	// Grey of each Snapshot density level, from the dark background to white live cells
+	private static final byte[] GREYS = { 0x10, 0x50, (byte) 0x90, (byte) 0xC8, (byte) 0xF0 };
+
+	private final Path path;
+	private final boolean gif;
+	private final long every;
+	private final int scale;
+	private final double minRate;
+	private final int delayCentiseconds;
+	private final Viewport viewport;
+
+	private final BlockingQueue<Snapshot> queue = new ArrayBlockingQueue<>(QUEUE_FRAMES);
+	private final Thread encoder;
+
+	// Snapshot that tells the encoder the run is over
+	private static final Snapshot END = Snapshot.of(1, 1, -1, "", true, new long[1]);
+
+	// Generation of the first offer() and its System.nanoTime(), the --export-rate schedule starts there
+	private long firstGeneration = -1;
+	private long firstNanos;
+	private long nextGeneration;
+	private long dropped;
+
+	// Written by the encoder thread, read after close()
+	private long frames;
+	private long encodeNanos;
+	private volatile Throwable failure;
+
+	// Image every frame is drawn into, and the GIF writer with the metadata of the first frame, which
+	// also makes the animation loop, and of all later frames
+	private BufferedImage image;
+	private ImageWriter gifWriter;
+	private ImageOutputStream gifOutput;
+	private IIOMetadata firstGifMetadata;
+	private IIOMetadata gifMetadata;
+
+	public FrameExporter(Path path, long every, int scale, int columns, int rows, double fps, double minRate,
+			int width, int height) {
+		this.path = path;
+		this.gif = path.toString().toLowerCase().endsWith(".gif");
+		this.every = every;
+		this.scale = scale;
+		this.minRate = minRate;
+		this.viewport = new Viewport(0, 0, 1, columns, rows).fit(width, height);
+		this.delayCentiseconds = (int) Math.max(1, Math.round(100 / fps));
+		this.encoder = new Thread(this::encode, "exporter");
+		encoder.setDaemon(true);
+		encoder.start();
+	}
+
+	// This method creates the exporter asked for by --export for board, or returns null without it
+
+	public static FrameExporter start(Options options, LifeBoard board) {
+		if (options.export == null) {
+			return null;
+		}
+		return new FrameExporter(Paths.get(options.export), options.exportEvery, options.exportScale,
+				options.exportColumns, options.exportRows, options.exportFps, options.exportRate, board.getWidth(),
+				board.getHeight());
+	}
+
+	// This method queues a frame of board when one is due at generation. Only the thread that
+	// advances the board may call it, right after an advance
+
+	public void offer(LifeBoard board, long generation) throws InterruptedException {
+		long now = System.nanoTime();
+		if (firstGeneration < 0) {
+			firstGeneration = generation;
+			firstNanos = now;
+			nextGeneration = generation;
+		}
+		if (generation < nextGeneration || failure != null) {
+			return;
+		}
+		nextGeneration = generation + every;
+
+		// Time left before waiting would drop the run below --export-rate
+		long slack = minRate > 0
+				? firstNanos + (long) ((generation - firstGeneration) / minRate * 1e9) - now
+				: Long.MAX_VALUE;
+		if (slack <= 0 && queue.remainingCapacity() == 0) {
+			dropped++;
+			return;
+		}
+		Snapshot frame = Snapshot.capture(board, viewport, generation, "", false);
+		if (!queue.offer(frame, Math.max(slack, 0), TimeUnit.NANOSECONDS)) {
+			dropped++;
+		}
+	}
+
+	// This method is the encoder thread
+
+	private void encode() {
+		try {
+			while (true) {
+				Snapshot frame = queue.take();
+				if (frame == END) {
+					break;
+				}
+				long start = System.nanoTime();
+				draw(frame);
+				if (gif) {
+					writeGifFrame();
+				} else {
+					Path file = Paths.get(String.format(path.toString(), frame.getGeneration()));
+					if (file.getParent() != null) {
+						Files.createDirectories(file.getParent());
+					}
+					if (!ImageIO.write(image, "png", file.toFile())) {
+						throw new IOException("No PNG writer");
+					}
+				}
+				frames++;
+				encodeNanos += System.nanoTime() - start;
+			}
+			if (gifWriter != null) {
+				gifWriter.endWriteSequence();
+			}
+		} catch (IOException | RuntimeException e) {
+			failure = e;
+			// Free an offer() waiting for room, offer() queues nothing more once failure is set
+			queue.clear();
+		} catch (InterruptedException e) {
+			failure = e;
+		} finally {
+			if (gifWriter != null) {
+				gifWriter.dispose();
+			}
+			if (gifOutput != null) {
+				try {
+					gifOutput.close();
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			}
+		}
+	}
+
+	// Draws every character of frame as a scale x scale square of its grey
+	private void draw(Snapshot frame) {
+		int width = frame.getWidth() * scale;
+		int height = frame.getHeight() * scale;
+		if (image == null || image.getWidth() != width || image.getHeight() != height) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED,
+					new IndexColorModel(8, GREYS.length, GREYS, GREYS, GREYS));
+		}
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		for (int y = 0; y < frame.getHeight(); y++) {
+			int row = y * scale * width;
+			for (int x = 0; x < frame.getWidth(); x++) {
+				byte level = (byte) frame.getLevel(x, y);
+				for (int i = 0, p = row + x * scale; i < scale; i++) {
+					pixels[p + i] = level;
+				}
+			}
+			// The other rows of the square are copies of the first
+			for (int i = 1; i < scale; i++) {
+				System.arraycopy(pixels, row, pixels, row + i * width, width);
+			}
+		}
+	}
+
+	private void writeGifFrame() throws IOException {
+		if (gifWriter == null) {
+			gifWriter = ImageIO.getImageWritersBySuffix("gif").next();
+			if (path.getParent() != null) {
+				Files.createDirectories(path.getParent());
+			}
+			Files.deleteIfExists(path);
+			gifOutput = ImageIO.createImageOutputStream(path.toFile());
+			if (gifOutput == null) {
+				throw new IOException("Cannot write " + path);
+			}
+			gifWriter.setOutput(gifOutput);
+			gifWriter.prepareWriteSequence(null);
+			ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
+			firstGifMetadata = gifMetadata(type, true);
+			gifMetadata = gifMetadata(type, false);
+			gifWriter.writeToSequence(new IIOImage(image, null, firstGifMetadata), null);
+			return;
+		}
+		gifWriter.writeToSequence(new IIOImage(image, null, gifMetadata), null);
+	}
+
+	// Frame metadata with the frame delay and, when loop is set, the NETSCAPE2.0 block that repeats
+	// the animation forever
+	private IIOMetadata gifMetadata(ImageTypeSpecifier type, boolean loop) throws IOException {
+		IIOMetadata metadata = gifWriter.getDefaultImageMetadata(type, null);
+		String format = metadata.getNativeMetadataFormatName();
+		IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+		IIOMetadataNode control = child(root, "GraphicControlExtension");
+		control.setAttribute("disposalMethod", "none");
+		control.setAttribute("userInputFlag", "FALSE");
+		control.setAttribute("transparentColorFlag", "FALSE");
+		control.setAttribute("delayTime", Integer.toString(delayCentiseconds));
+		control.setAttribute("transparentColorIndex", "0");
+
+		if (loop) {
+			IIOMetadataNode netscape = new IIOMetadataNode("ApplicationExtension");
+			netscape.setAttribute("applicationID", "NETSCAPE");
+			netscape.setAttribute("authenticationCode", "2.0");
+			netscape.setUserObject(new byte[] { 1, 0, 0 });
+			child(root, "ApplicationExtensions").appendChild(netscape);
+		}
+
+		metadata.setFromTree(format, root);
+		return metadata;
+	}
+
+	// The child of node with the given name, added when it has none
+	private static IIOMetadataNode child(IIOMetadataNode node, String name) {
+		for (int i = 0; i < node.getLength(); i++) {
+			if (node.item(i).getNodeName().equals(name)) {
+				return (IIOMetadataNode) node.item(i);
+			}
+		}
+		IIOMetadataNode child = new IIOMetadataNode(name);
+		node.appendChild(child);
+		return child;
+	}
+
+	// This method waits for the queued frames to be encoded and finishes the file
+
+	public void close() throws IOException {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (failure == null) {
+					queue.put(END);
+				}
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		while (encoder.isAlive()) {
+			try {
+				encoder.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw new IOException("Export to " + path + " failed", failure);
+		}
+	}
+
+	// Frames written and dropped and the encoding time per frame. Read it after close()
+	public String report() {
+		return "export frames=" + frames
+				+ " dropped=" + dropped
+				+ " size=" + (image == null ? "0x0" : image.getWidth() + "x" + image.getHeight())
+				+ " encode-ms/frame=" + String.format("%.2f", frames == 0 ? 0 : encodeNanos / 1e6 / frames)
+				+ " to=" + path;
+	}
+}
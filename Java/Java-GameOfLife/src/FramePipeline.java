@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+* <p>
+* Interactive run split over two threads. The simulator thread owns the board:
+* it advances it --jump generations at a time, at most --rate times a second,
+* and publishes a Snapshot with the status line after every advance. The
+* calling thread renders: at most --fps times a second it takes the newest
+* snapshot from the SnapshotRing and draws it, skipping any it fell behind on.
+* </p>
+*
+* Neither side waits for the other, so a slow terminal lowers the frame rate
+* but not the generation rate. The board is only ever touched by the
+* simulator thread; the renderer only sees immutable snapshots, and
+* checkpoints are written on a thread of their own.
+* <p>
+* Snapshots only hold the Viewport that is on screen, so a frame costs the
+* same on a board of any size. A key reader thread takes keys from standard
+* input as lines arrive: w, a, s and d pan by a quarter of the window, + and
+* - zoom in and out by a factor of two and f fits the whole board. The
+* simulator captures the current generation again as soon as the view
+* changes, without waiting for its next advance.
+* </p>
+*/
+
+public class FramePipeline {
+
+	// Snapshots the simulator can run ahead of the renderer before the oldest is dropped
+	static final int RING_CAPACITY = 4;
+
+	private final LifeBoard board;
+	private final Options options;
+	private final TerminalRenderer renderer;
+	private final CycleDetector cycles;
+	private final SimulationMetrics metrics;
+	private final Checkpointer checkpoints;
+	private final long firstGeneration;
+	private final SnapshotRing ring = new SnapshotRing(RING_CAPACITY);
+
+	// Window that is drawn, replaced by the key reader and read by the simulator for every capture
+	private volatile Viewport viewport;
+
+	// Set by the key reader to wake the simulator when viewport changed
+	private final Object viewLock = new Object();
+	private boolean viewChanged;
+
+	// renderer is null for --render=plain, cycles null without --detect-cycles, metrics null
+	// without --jmx or --metrics-interval and checkpoints null without --checkpoint-dir. The board
+	// is at firstGeneration, which is 0 unless the run resumed from a checkpoint
+	public FramePipeline(LifeBoard board, Options options, TerminalRenderer renderer, CycleDetector cycles,
+			SimulationMetrics metrics, Checkpointer checkpoints, long firstGeneration) {
+		this.board = board;
+		this.options = options;
+		this.renderer = renderer;
+		this.cycles = cycles;
+		this.metrics = metrics;
+		this.checkpoints = checkpoints;
+		this.firstGeneration = firstGeneration;
+		this.viewport = Viewport.of(options, board.getWidth(), board.getHeight());
+	}
+
+	// This method runs until the board settles, drawing frames on the calling thread
+
+	public void run() throws IOException, InterruptedException {
+		Thread simulator = new Thread(this::simulate, "simulator");
+		simulator.setDaemon(true);
+		simulator.start();
+		Thread keys = new Thread(() -> readKeys(System.in), "keys");
+		keys.setDaemon(true);
+		keys.start();
+		try {
+			render();
+		} finally {
+			ring.close();
+			simulator.interrupt();
+			simulator.join();
+		}
+	}
+
+	private void render() throws IOException, InterruptedException {
+		long frameNanos = options.fps > 0 ? (long) (1e9 / options.fps) : 0;
+		long nextFrame = System.nanoTime();
+		while (true) {
+			Snapshot snapshot = ring.takeLatest(100, TimeUnit.MILLISECONDS);
+			if (snapshot == null) {
+				if (ring.isDrained()) {
+					return;
+				}
+				continue;
+			}
+			String status = snapshot.getStatus();
+			long dropped = ring.getDropped();
+			if (dropped > 0) {
+				status += "  Frames skipped: " + dropped;
+			}
+			if (renderer != null) {
+				renderer.render(snapshot, status);
+			} else {
+				snapshot.print();
+				System.out.println(status);
+			}
+			if (snapshot.isLast()) {
+				return;
+			}
+			nextFrame = sleepUntil(nextFrame + frameNanos);
+		}
+	}
+
+	// This method is the simulator thread. It publishes the starting board, then one snapshot per advance
+
+	private void simulate() {
+		FrameExporter exporter = FrameExporter.start(options, board);
+		try {
+			long generation = firstGeneration;
+			boolean settled = cycles != null && cycles.observe(generation, board);
+			ring.publish(capture(generation, settled));
+			if (exporter != null) {
+				exporter.offer(board, generation);
+			}
+
+			long stepNanos = options.rate > 0 ? (long) (1e9 / options.rate) : 0;
+			long nextStep = System.nanoTime();
+			while (!settled && !ring.isClosed()) {
+				nextStep = awaitStep(nextStep + stepNanos, generation);
+				long start = metrics != null ? System.nanoTime() : 0;
+				Main.advance(board, options.jump);
+				generation += options.jump;
+				if (metrics != null) {
+					metrics.record(board, generation, options.jump, start);
+				}
+				if (checkpoints != null) {
+					checkpoints.offer(board, generation);
+				}
+				if (exporter != null) {
+					exporter.offer(board, generation);
+				}
+				settled = cycles != null && cycles.observe(generation, board);
+				ring.publish(capture(generation, settled));
+			}
+		} catch (InterruptedException e) {
+			// The renderer stopped
+		} catch (RuntimeException | Error e) {
+			finishExport(exporter);
+			ring.fail(e);
+			return;
+		}
+		finishExport(exporter);
+		ring.finish();
+	}
+
+	// Waits for the exporter to complete its file. run() joins this thread, so the file is complete
+	// before the run ends even when the renderer has already drawn the last frame
+	private static void finishExport(FrameExporter exporter) {
+		if (exporter == null) {
+			return;
+		}
+		try {
+			exporter.close();
+		} catch (IOException e) {
+			System.err.println(e.getMessage() + ": " + e.getCause());
+		}
+	}
+
+	// Sleeps like sleepUntil(), but publishes the board again through the new viewport every time the
+	// view changes meanwhile
+
+	private long awaitStep(long deadline, long generation) throws InterruptedException {
+		long now = System.nanoTime();
+		long next = deadline <= now ? now : deadline;
+		while (true) {
+			boolean changed;
+			synchronized (viewLock) {
+				long left = deadline - System.nanoTime();
+				if (!viewChanged && left > 0) {
+					TimeUnit.NANOSECONDS.timedWait(viewLock, left);
+				}
+				changed = viewChanged;
+				viewChanged = false;
+			}
+			if (changed) {
+				ring.publish(capture(generation, false));
+			} else if (System.nanoTime() >= deadline) {
+				return next;
+			}
+		}
+	}
+
+	// This method is the key reader thread. It applies every key to the viewport until the input ends
+
+	private void readKeys(InputStream in) {
+		try {
+			int key;
+			while ((key = in.read()) >= 0 && !ring.isClosed()) {
+				Viewport view = viewport;
+				Viewport changed = steer(view, (char) key);
+				if (changed != view) {
+					viewport = changed;
+					synchronized (viewLock) {
+						viewChanged = true;
+						viewLock.notifyAll();
+					}
+				}
+			}
+		} catch (IOException e) {
+			// No keys then
+		}
+	}
+
+	// Viewport after a key, the same one for keys that do nothing
+	private Viewport steer(Viewport view, char key) {
+		int width = board.getWidth();
+		int height = board.getHeight();
+		switch (Character.toLowerCase(key)) {
+		case 'w':
+			return view.pan(0, -0.25, width, height);
+		case 'a':
+			return view.pan(-0.25, 0, width, height);
+		case 's':
+			return view.pan(0, 0.25, width, height);
+		case 'd':
+			return view.pan(0.25, 0, width, height);
+		case '+':
+		case '=':
+			return view.zoom(view.getZoom() / 2, width, height);
+		case '-':
+			return view.zoom(view.getZoom() * 2, width, height);
+		case 'f':
+			return view.fit(width, height);
+		default:
+			return view;
+		}
+	}
+
+	// Snapshot of the window on screen, with the status line
+	private Snapshot capture(long generation, boolean settled) {
+		Viewport view = viewport;
+		String status = status(generation, settled);
+		if (view.getZoom() > 1 || view.visibleColumns(board.getWidth()) < board.getWidth()
+				|| view.visibleRows(board.getHeight()) < board.getHeight()) {
+			status += "  " + view.describe() + " of " + board.getWidth() + "x" + board.getHeight();
+		}
+		return Snapshot.capture(board, view, generation, status, settled);
+	}
+
+	private String status(long generation, boolean settled) {
+		String status = "Generation: " + generation;
+		if (board instanceof Board && ((Board) board).getTileSize() > 0) {
+			Board tiled = (Board) board;
+			status += "  Active tiles: " + tiled.getActiveTileCount() + "/" + tiled.getTileCount();
+		}
+		if (settled) {
+			status += "  " + cycles.report();
+		}
+		return status;
+	}
+
+	// Sleeps until the given System.nanoTime() and returns it, or returns now when that is already past so a
+	// late thread does not try to catch up with a burst
+	private static long sleepUntil(long deadline) throws InterruptedException {
+		long now = System.nanoTime();
+		if (deadline <= now) {
+			return now;
+		}
+		TimeUnit.NANOSECONDS.sleep(deadline - now);
+		return deadline;
+	}
+}
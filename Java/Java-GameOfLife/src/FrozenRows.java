@@ -0,0 +1,17 @@
+/**
+* <p>
+* Read-only view of one generation of a board, handed out by
+* Checkpointable.freeze() and read by the checkpoint writer on its own thread
+* while the board keeps stepping. Rows are packed like BitBoard: bit x &amp; 63
+* of word x &gt;&gt;&gt; 6 is the cell at column x.
+* </p>
+*/
+
+public interface FrozenRows {
+
+	// Copies row y into the first (width + 63) / 64 words of row
+	void copyRow(int y, long[] row);
+
+	// Gives the generation back to the board, the view must not be read afterwards
+	void release();
+}
@@ -0,0 +1,247 @@
+import java.util.Arrays;
+
+/**
+* <p>
+* Compressed history of a board for seeking back to past generations. Each
+* recorded generation is a frame. Most frames only hold the cells that
+* flipped since the previous one; every keyframeInterval-th frame holds the
+* whole board as its list of live cells instead, so a seek never replays more
+* than keyframeInterval - 1 deltas. Cells are listed as row-major indices
+* y * width + x in ascending order, stored as variable-length gaps between
+* neighbours, so a frame costs a byte or two per listed cell and the history
+* grows with the churn and population of the board, not with its area. A
+* frame whose list would be longer than a plain bitmap of the board, as in
+* the first generations of a dense soup, is stored as that bitmap instead.
+* </p>
+*
+* The only board-sized memory is the copy of the latest recorded generation
+* that the next frame is diffed against, one bit per cell. Any CellGrid can be
+* recorded; record() reads it with getState(), once per cell.
+*/
+
+public class GenerationHistory {
+
+	private final int width;
+	private final int height;
+	private final int keyframeInterval;
+
+	// Latest recorded generation, bit (y * width + x) & 63 of word (y * width + x) / 64 as in Snapshot
+	private final long[] current;
+
+	// Encoded frames back to back, frame i starts at offsets[i] and ends where frame i + 1 starts
+	private byte[] data = new byte[1 << 12];
+	private int length;
+	private int[] offsets = new int[64];
+	private long[] generations = new long[64];
+	private int frames;
+
+	// Cell indices of the frame being encoded, reused between frames
+	private long[] listed = new long[64];
+
+	// Read position in data while a frame is decoded
+	private int position;
+
+	public GenerationHistory(int width, int height, int keyframeInterval) {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException("Keyframe interval must be at least 1: " + keyframeInterval);
+		}
+		this.width = width;
+		this.height = height;
+		this.keyframeInterval = keyframeInterval;
+		this.current = new long[(int) (((long) width * height + 63) >>> 6)];
+	}
+
+	// This method appends the board as the frame of generation, which must be later than every
+	// generation recorded before
+
+	public void record(CellGrid board, long generation) {
+		if (board.getWidth() != width || board.getHeight() != height) {
+			throw new IllegalArgumentException("Board is " + board.getWidth() + "x" + board.getHeight()
+					+ ", the history records " + width + "x" + height);
+		}
+		if (frames > 0 && generation <= generations[frames - 1]) {
+			throw new IllegalArgumentException("Generation " + generation + " is not after the last recorded "
+					+ generations[frames - 1]);
+		}
+
+		// Diff the board against the previous frame, collecting the flipped cells in order
+		int count = 0;
+		long index = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, index++) {
+				int word = (int) (index >>> 6);
+				if (board.getState(x, y) != ((int) (current[word] >>> index) & 1)) {
+					current[word] ^= 1L << index;
+					if (count == listed.length) {
+						listed = Arrays.copyOf(listed, count << 1);
+					}
+					listed[count++] = index;
+				}
+			}
+		}
+
+		if (frames % keyframeInterval == 0) {
+			// A keyframe lists every live cell instead
+			count = 0;
+			for (int word = 0; word < current.length; word++) {
+				for (long bits = current[word]; bits != 0; bits &= bits - 1) {
+					if (count == listed.length) {
+						listed = Arrays.copyOf(listed, count << 1);
+					}
+					listed[count++] = ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+				}
+			}
+		}
+
+		if (frames == offsets.length) {
+			offsets = Arrays.copyOf(offsets, frames << 1);
+			generations = Arrays.copyOf(generations, frames << 1);
+		}
+		offsets[frames] = length;
+		generations[frames] = generation;
+		frames++;
+		writeCells(listed, count);
+	}
+
+	// This method returns the board as it was at a recorded generation
+
+	public Snapshot seek(long generation) {
+		return Snapshot.of(width, height, generation, "Generation: " + generation, false, decode(frameOf(generation)));
+	}
+
+	// This method rebuilds the cells of a frame from the keyframe at or before it and the deltas since
+
+	private long[] decode(int frame) {
+		long[] cells = new long[current.length];
+		for (int i = frame - frame % keyframeInterval; i <= frame; i++) {
+			// A keyframe lists the live cells and flipping them into the empty board sets exactly those
+			readCells(i, cells);
+		}
+		return cells;
+	}
+
+	// This method sets the board to a recorded generation and forgets every frame after it, so the
+	// simulation can continue from there. Only the cells that differ are written to the board
+
+	public void rewind(LifeBoard board, long generation) {
+		int frame = frameOf(generation);
+		long[] cells = decode(frame);
+		long index = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, index++) {
+				int state = (int) (cells[(int) (index >>> 6)] >>> index) & 1;
+				if (board.getState(x, y) != state) {
+					if (state == 1) {
+						board.setAlive(x, y);
+					} else {
+						board.setDead(x, y);
+					}
+				}
+			}
+		}
+		if (frame + 1 < frames) {
+			length = offsets[frame + 1];
+			frames = frame + 1;
+		}
+		System.arraycopy(cells, 0, current, 0, cells.length);
+	}
+
+	private int frameOf(long generation) {
+		int frame = Arrays.binarySearch(generations, 0, frames, generation);
+		if (frame < 0) {
+			throw new IllegalArgumentException("Generation " + generation + " was not recorded"
+					+ (frames == 0 ? "" : ", the history holds " + generations[0] + " to " + generations[frames - 1]));
+		}
+		return frame;
+	}
+
+	// Writes count * 2, then the first index and the gaps between the others, as 7-bit groups low
+	// first with the high bit set on every group but the last. When that comes out longer than a
+	// bitmap of the board, it is replaced by count * 2 + 1 and the bitmap, 8 cells per byte
+	private void writeCells(long[] cells, int count) {
+		int start = length;
+		int bitmapBytes = (int) (((long) width * height + 7) >>> 3);
+		writeVarLong((long) count << 1);
+		long previous = -1;
+		for (int i = 0; i < count && length - start <= bitmapBytes; i++) {
+			writeVarLong(cells[i] - previous - 1);
+			previous = cells[i];
+		}
+		if (length - start <= bitmapBytes) {
+			return;
+		}
+
+		length = start;
+		writeVarLong((long) count << 1 | 1);
+		if (length + bitmapBytes > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length << 1, length + bitmapBytes));
+		}
+		Arrays.fill(data, length, length + bitmapBytes, (byte) 0);
+		for (int i = 0; i < count; i++) {
+			data[length + (int) (cells[i] >>> 3)] |= (byte) (1 << (cells[i] & 7));
+		}
+		length += bitmapBytes;
+	}
+
+	private void writeVarLong(long value) {
+		if (length + 10 > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length << 1, length + 10));
+		}
+		while ((value & ~0x7FL) != 0) {
+			data[length++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		data[length++] = (byte) value;
+	}
+
+	// Flips every cell listed by frame in cells
+	private void readCells(int frame, long[] cells) {
+		position = offsets[frame];
+		long header = readVarLong();
+		if ((header & 1) != 0) {
+			for (int i = 0, end = (int) (((long) width * height + 7) >>> 3); i < end; i++) {
+				cells[i >>> 3] ^= (data[position + i] & 0xFFL) << ((i & 7) << 3);
+			}
+			return;
+		}
+		long count = header >>> 1;
+		long index = -1;
+		for (long i = 0; i < count; i++) {
+			index += readVarLong() + 1;
+			cells[(int) (index >>> 6)] ^= 1L << index;
+		}
+	}
+
+	private long readVarLong() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = data[position++];
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	public int getFrameCount() {
+		return frames;
+	}
+
+	public long getFirstGeneration() {
+		return frames == 0 ? -1 : generations[0];
+	}
+
+	public long getLastGeneration() {
+		return frames == 0 ? -1 : generations[frames - 1];
+	}
+
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	// Bytes held by the recorded frames: the encoded cells and 12 bytes of bookkeeping per frame
+	public long getStoredBytes() {
+		return length + 12L * frames;
+	}
+}
@@ -0,0 +1,247 @@
+/**
+* <p>
+* Game of Life board with a halo: the cells are stored row by row in one
+* byte array that is two cells wider and two cells taller than the board,
+* and the extra one-cell ring around the edge holds ghost copies of whatever
+* lies beyond it. step() refreshes the ring once and then reads all eight
+* neighbours of every cell at fixed offsets, with no bounds checks at all.
+* </p>
+* <p>
+* The refresh decides the edge behaviour. With dead edges the ring is never
+* written and stays dead, which matches Board. With wrapped edges it is
+* filled with the opposite rows and columns, so the board is a torus and
+* patterns leaving one side come back on the other.
+* </p>
+*
+* A HaloBoard can also be one strip of a larger board, as in TileWorker: the
+* ghost rows above and below are then filled from the neighbouring strips with
+* setGhostRow() before every step, and originY shifts the Zobrist keys to the
+* strip's place on the full board.
+*/
+
+public class HaloBoard implements LifeBoard, StateHash, CellChurn {
+
+	private final int width;
+	private final int height;
+	private final boolean wrap;
+
+	// Row of the full board that row 0 of this board is, and whether the ghost rows are filled from outside
+	private final int originY;
+	private final boolean externalRows;
+
+	// Row length including the two ghost columns, cell (x, y) is at (y + 1) * stride + x + 1
+	private final int stride;
+
+	private byte[] cells;
+
+	// Buffer the next generation is written to before it is swapped with cells
+	private byte[] next;
+
+	private Rule rule = Rule.CONWAY;
+
+	// Next state of the centre cell for every 3x3 neighbourhood, laid out as in Board
+	private int[] nextStateTable;
+
+	// Zobrist hash of the live cells, updated only for cells that flip
+	private long stateHash;
+
+	private long population;
+
+	// Cells born and died in all steps so far
+	private long born;
+	private long died;
+
+	public HaloBoard(int height, int width, boolean wrap) {
+		/*
+		 * Constructor to create an empty board with height and width. wrap joins
+		 * opposite edges into a torus, otherwise cells beyond the edges are dead
+		 */
+		this(height, width, wrap, 0, false);
+	}
+
+	HaloBoard(int height, int width, boolean wrap, int originY, boolean externalRows) {
+		/*
+		 * Constructor for a strip of a larger board starting at row originY. With
+		 * externalRows the ghost rows are left to setGhostRow() and wrap only joins
+		 * the left and right edges
+		 */
+		this.originY = originY;
+		this.externalRows = externalRows;
+		this.width = width;
+		this.height = height;
+		this.wrap = wrap;
+		this.stride = width + 2;
+		this.cells = new byte[stride * (height + 2)];
+		this.next = new byte[stride * (height + 2)];
+		setRule(Rule.CONWAY);
+	}
+
+	private int index(int x, int y) {
+		return (y + 1) * stride + x + 1;
+	}
+
+	public void setAlive(int x, int y) {
+		int i = index(x, y);
+		if (cells[i] == 0) {
+			cells[i] = 1;
+			stateHash ^= Zobrist.cellKey(x, originY + y);
+			population++;
+		}
+	}
+
+	public void setDead(int x, int y) {
+		int i = index(x, y);
+		if (cells[i] != 0) {
+			cells[i] = 0;
+			stateHash ^= Zobrist.cellKey(x, originY + y);
+			population--;
+		}
+	}
+
+	public int getState(int x, int y) {
+		if (x < 0 || x >= width) {
+			return 0;
+		}
+
+		if (y < 0 || y >= height) {
+			return 0;
+		}
+
+		return cells[index(x, y)];
+	}
+
+	// This method refreshes the ghost ring, then slides a packed 3x3 window along every row
+
+	public void step() {
+		refreshHalo();
+
+		byte[] cells = this.cells;
+		byte[] next = this.next;
+		int[] nextStateTable = this.nextStateTable;
+		long hash = stateHash;
+		// Cells that flipped and the change in population, which together give the born and died counts
+		long flips = 0;
+		long growth = 0;
+
+		for (int y = 0; y < height; y++) {
+			int mid = index(0, y);
+			int keyY = originY + y;
+
+			// Bit 3 * row + col of the window is the cell at (x - 1 + col, y - 1 + row). It starts one
+			// column early, holding the ghost column and column 0, because the loop shifts first
+			int window = column(cells, mid - 1) << 1 | column(cells, mid) << 2;
+
+			for (int x = 0; x < width; x++) {
+				window = (window >>> 1) & 0b011011011 | column(cells, mid + x + 1) << 2;
+				int alive = cells[mid + x];
+				int state = nextStateTable[window];
+				next[mid + x] = (byte) state;
+
+				// Adds the key only when the cell flipped, without a branch
+				int flip = state ^ alive;
+				hash ^= Zobrist.cellKey(x, keyY) & -(long) flip;
+				flips += flip;
+				growth += state - alive;
+			}
+		}
+		stateHash = hash;
+		born += (flips + growth) / 2;
+		died += (flips - growth) / 2;
+		population += growth;
+
+		this.next = cells;
+		this.cells = next;
+	}
+
+	// Cells above, at and below index packed into bits 0, 3 and 6
+	private int column(byte[] cells, int i) {
+		return cells[i - stride] | cells[i] << 3 | cells[i + stride] << 6;
+	}
+
+	// This method fills the ghost ring for the coming step. Dead edges keep the ring at 0, as step()
+	// only ever writes inside it; wrapped edges copy the opposite rows, then the opposite columns,
+	// which also fills the corners
+
+	private void refreshHalo() {
+		if (!wrap) {
+			return;
+		}
+		if (!externalRows) {
+			System.arraycopy(cells, index(-1, height - 1), cells, index(-1, -1), stride);
+			System.arraycopy(cells, index(-1, 0), cells, index(-1, height), stride);
+		}
+		for (int y = -1; y <= height; y++) {
+			cells[index(-1, y)] = cells[index(width - 1, y)];
+			cells[index(width, y)] = cells[index(0, y)];
+		}
+	}
+
+	// Copies the width cells of row y, where -1 and height are the ghost rows
+	void getRow(int y, byte[] row) {
+		System.arraycopy(cells, index(0, y), row, 0, width);
+	}
+
+	// Sets ghost row y (-1 above the board or height below it) for the next step
+	void setGhostRow(int y, byte[] row) {
+		if (y != -1 && y != height) {
+			throw new IllegalArgumentException("Not a ghost row: " + y);
+		}
+		System.arraycopy(row, 0, cells, index(0, y), width);
+	}
+
+	public void setRule(Rule rule) {
+		this.rule = rule;
+		this.nextStateTable = rule.neighbourhoodTable();
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public boolean isWrapping() {
+		return wrap;
+	}
+
+	public void print() {
+		Board.clearConsole();
+		StringBuilder line = new StringBuilder(width + 2);
+		for (int y = 0; y < height; y++) {
+			line.setLength(0);
+			line.append(' ');
+			for (int x = 0; x < width; x++) {
+				line.append(getState(x, y) == 0 ? ' ' : '#');
+			}
+			line.append(' ');
+			System.out.println(line);
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	public long getPopulation() {
+		return population;
+	}
+
+	public long getBornCount() {
+		return born;
+	}
+
+	public long getDiedCount() {
+		return died;
+	}
+
+	public void setChurn(long born, long died) {
+		this.born = born;
+		this.died = died;
+	}
+}
@@ -0,0 +1,573 @@
+/**
+* <p>
+* HashLife engine. The universe is a quadtree of canonical nodes: two nodes
+* with the same four children are always the same object, so repeated regions
+* of space (and of time) are stored and computed only once. Every node
+* memoises its own future, which lets the board jump 2^k generations in a
+* single call. A node keeps one result per step size, so runs that mix step
+* sizes, as advance() does for a --jump that is not a power of two, reuse
+* every result computed for any of them.
+* </p>
+* <p>
+* Unlike Board the universe is unbounded: width and height only select the
+* window that getState() and print() look at, and patterns may leave it and
+* come back. Nodes live in a hash table that is garbage collected whenever it
+* grows past maxNodes, dropping every node that is no longer reachable from
+* the current root. The limit is never raised: a pattern that needs most of
+* it to stay alive stops the run with an error.
+* </p>
+*/
+
+public class HashLifeBoard implements LifeBoard {
+
+	// Rough heap size of one node including its hash table slot
+	static final int BYTES_PER_NODE = 64;
+
+	// Node limit used when none is given
+	static final int DEFAULT_MAX_NODES = 1 << 22;
+
+	private static final int INITIAL_BUCKETS = 1 << 16;
+
+	// Largest k stepPow2() accepts
+	static final int MAX_STEP_EXPONENT = 60;
+
+	static final class Node {
+		final int level;
+		final Node nw, ne, sw, se;
+		final long population;
+		final int hash;
+
+		// Centre of this node advanced 2^(level - 2) generations, the largest step it can take
+		Node result;
+
+		// slower[j] is the centre advanced 2^j generations for j < level - 2, null until one is computed
+		Node[] slower;
+
+		// Next node in the same hash bucket
+		Node chain;
+
+		boolean marked;
+
+		Node(int level, Node nw, Node ne, Node sw, Node se, long population, int hash) {
+			this.level = level;
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.population = population;
+			this.hash = hash;
+		}
+	}
+
+	private static final Node DEAD = new Node(0, null, null, null, null, 0, 0);
+	private static final Node ALIVE = new Node(0, null, null, null, null, 1, 1);
+
+	private final int width;
+	private final int height;
+	private final int maxNodes;
+
+	// Canonical node table
+	private Node[] buckets = new Node[INITIAL_BUCKETS];
+	private int nodeCount;
+
+	// Empty node of every level, kept alive across collections
+	private Node[] empty = new Node[64];
+
+	// Nodes held by the recursion in progress, marked as roots during a collection
+	private Node[] stack = new Node[256];
+	private int sp;
+
+	private Node root;
+
+	// Position of the root's top-left cell in window coordinates
+	private long originX;
+	private long originY;
+
+	// log2 of the step being taken
+	private int stepExponent;
+
+	private long generation;
+
+	private Rule rule = Rule.CONWAY;
+
+	// Next state of the centre cell for every 3x3 neighbourhood, as in Board
+	private int[] nextStateTable = Rule.CONWAY.neighbourhoodTable();
+
+	public HashLifeBoard(int height, int width) {
+		this(height, width, DEFAULT_MAX_NODES);
+	}
+
+	public HashLifeBoard(int height, int width, int maxNodes) {
+		/*
+		 * Constructor to create an empty universe whose window is height by width.
+		 * maxNodes bounds the node table, see collect()
+		 */
+		this.width = width;
+		this.height = height;
+		this.maxNodes = maxNodes;
+
+		int level = 3;
+		while ((1L << level) < Math.max(width, height)) {
+			level++;
+		}
+		empty[0] = DEAD;
+		this.root = emptyNode(level);
+	}
+
+	public void setAlive(int x, int y) {
+		setCell(x, y, true);
+	}
+
+	public void setDead(int x, int y) {
+		setCell(x, y, false);
+	}
+
+	public int getState(int x, int y) {
+		if (x < 0 || x >= width) {
+			return 0;
+		}
+
+		if (y < 0 || y >= height) {
+			return 0;
+		}
+
+		return cellAt(root, x - originX, y - originY);
+	}
+
+	// Advance the universe by one generation
+
+	public void step() {
+		stepPow2(0);
+	}
+
+	// This method advances the universe by 2^k generations in one call
+
+	public void stepPow2(int k) {
+		if (k < 0 || k > MAX_STEP_EXPONENT) {
+			throw new IllegalArgumentException("Step exponent out of range: " + k);
+		}
+		stepExponent = k;
+
+		// The result of a level n node covers its centre half, so keep the pattern in the centre quarter
+		while (root.level < k + 3 || !centredInQuarter(root)) {
+			expand();
+		}
+
+		sp = 0;
+		long offset = 1L << (root.level - 2);
+		root = result(root);
+		originX += offset;
+		originY += offset;
+		generation += 1L << k;
+		sp = 0;
+	}
+
+	// This method advances the universe by any number of generations, largest powers of two first
+
+	public void advance(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Cannot advance a negative number of generations: " + generations);
+		}
+		// stepPow2() goes up to 2^60, the bits above it are made of that many 2^60 steps
+		for (long i = generations >>> MAX_STEP_EXPONENT; i > 0; i--) {
+			stepPow2(MAX_STEP_EXPONENT);
+		}
+		for (int k = MAX_STEP_EXPONENT - 1; k >= 0; k--) {
+			if ((generations & (1L << k)) != 0) {
+				stepPow2(k);
+			}
+		}
+	}
+
+	public void print() {
+		Board.clearConsole();
+		StringBuilder line = new StringBuilder(width + 2);
+		for (int y = 0; y < height; y++) {
+			line.setLength(0);
+			line.append(' ');
+			for (int x = 0; x < width; x++) {
+				line.append(getState(x, y) == 0 ? ' ' : '#');
+			}
+			line.append(' ');
+			System.out.println(line);
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	// Number of live cells in the whole universe, not only the window
+	public long getPopulation() {
+		return root.population;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	// This method changes the rule. Memoised results were computed under the old rule and are dropped;
+	// rules with B0 would turn the empty space around the pattern alive and are rejected
+
+	public void setRule(Rule rule) {
+		if (rule.bornFromNothing()) {
+			throw new IllegalArgumentException("The hashlife engine cannot run rules with B0: " + rule);
+		}
+		this.rule = rule;
+		this.nextStateTable = rule.neighbourhoodTable();
+		clearResults();
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	// ---------------------------------------------------------------- quadtree
+
+	private void setCell(long x, long y, boolean alive) {
+		long cx = x - originX;
+		long cy = y - originY;
+		while (cx < 0 || cy < 0 || cx >= (1L << root.level) || cy >= (1L << root.level)) {
+			expand();
+			cx = x - originX;
+			cy = y - originY;
+		}
+		sp = 0;
+		maybeCollect();
+		root = setCell(root, cx, cy, alive);
+	}
+
+	private Node setCell(Node n, long x, long y, boolean alive) {
+		if (n.level == 0) {
+			return alive ? ALIVE : DEAD;
+		}
+		long half = 1L << (n.level - 1);
+		if (y < half) {
+			if (x < half) {
+				return join(setCell(n.nw, x, y, alive), n.ne, n.sw, n.se);
+			}
+			return join(n.nw, setCell(n.ne, x - half, y, alive), n.sw, n.se);
+		}
+		if (x < half) {
+			return join(n.nw, n.ne, setCell(n.sw, x, y - half, alive), n.se);
+		}
+		return join(n.nw, n.ne, n.sw, setCell(n.se, x - half, y - half, alive));
+	}
+
+	private int cellAt(Node n, long x, long y) {
+		if (x < 0 || y < 0 || x >= (1L << n.level) || y >= (1L << n.level)) {
+			return 0;
+		}
+		while (n.level > 0) {
+			if (n.population == 0) {
+				return 0;
+			}
+			long half = 1L << (n.level - 1);
+			if (y < half) {
+				n = x < half ? n.nw : n.ne;
+			} else {
+				n = x < half ? n.sw : n.se;
+				y -= half;
+			}
+			if (x >= half) {
+				x -= half;
+			}
+		}
+		return (int) n.population;
+	}
+
+	// Surround the root with empty space, doubling its size and keeping it centred
+	private void expand() {
+		Node e = emptyNode(root.level - 1);
+		long shift = 1L << (root.level - 1);
+		root = join(join(e, e, e, root.nw), join(e, e, root.ne, e),
+				join(e, root.sw, e, e), join(root.se, e, e, e));
+		originX -= shift;
+		originY -= shift;
+	}
+
+	private static boolean centredInQuarter(Node n) {
+		return n.population == n.nw.se.se.population + n.ne.sw.sw.population
+				+ n.sw.ne.ne.population + n.se.nw.nw.population;
+	}
+
+	private Node emptyNode(int level) {
+		if (empty[level] == null) {
+			Node e = emptyNode(level - 1);
+			empty[level] = join(e, e, e, e);
+		}
+		return empty[level];
+	}
+
+	// Returns the canonical node with these four children
+	private Node join(Node nw, Node ne, Node sw, Node se) {
+		int h = hash(nw.hash, ne.hash, sw.hash, se.hash);
+		int index = h & (buckets.length - 1);
+		for (Node n = buckets[index]; n != null; n = n.chain) {
+			if (n.hash == h && n.nw == nw && n.ne == ne && n.sw == sw && n.se == se) {
+				return n;
+			}
+		}
+		Node n = new Node(nw.level + 1, nw, ne, sw, se,
+				nw.population + ne.population + sw.population + se.population, h);
+		n.chain = buckets[index];
+		buckets[index] = n;
+		nodeCount++;
+		if (nodeCount > buckets.length - (buckets.length >>> 2)) {
+			resize();
+		}
+		return n;
+	}
+
+	private static int hash(int nw, int ne, int sw, int se) {
+		int h = nw * 0x9E3779B1 + ne;
+		h = h * 0x85EBCA77 + sw;
+		h = h * 0xC2B2AE3D + se;
+		return h ^ (h >>> 15);
+	}
+
+	private void resize() {
+		Node[] old = buckets;
+		buckets = new Node[old.length << 1];
+		for (Node head : old) {
+			for (Node n = head; n != null;) {
+				Node next = n.chain;
+				int index = n.hash & (buckets.length - 1);
+				n.chain = buckets[index];
+				buckets[index] = n;
+				n = next;
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- evolution
+
+	// This method returns the centre of n advanced 2^min(stepExponent, n.level - 2) generations
+
+	private Node result(Node n) {
+		boolean full = stepExponent >= n.level - 2;
+		Node cached = full ? n.result : n.slower == null ? null : n.slower[stepExponent];
+		if (cached != null) {
+			return cached;
+		}
+		int mark = sp;
+		push(n);
+		maybeCollect();
+
+		Node r;
+		if (n.level == 2) {
+			r = baseResult(n);
+		} else {
+			// Nine overlapping subnodes of level n - 1
+			Node n00 = n.nw;
+			Node n01 = push(centredHorizontal(n.nw, n.ne));
+			Node n02 = n.ne;
+			Node n10 = push(centredVertical(n.nw, n.sw));
+			Node n11 = push(centredSubnode(n));
+			Node n12 = push(centredVertical(n.ne, n.se));
+			Node n20 = n.sw;
+			Node n21 = push(centredHorizontal(n.sw, n.se));
+			Node n22 = n.se;
+
+			if (full) {
+				// Full speed: advance each of the nine 2^(level - 3), then the four combined ones again
+				Node r00 = push(result(n00));
+				Node r01 = push(result(n01));
+				Node r02 = push(result(n02));
+				Node r10 = push(result(n10));
+				Node r11 = push(result(n11));
+				Node r12 = push(result(n12));
+				Node r20 = push(result(n20));
+				Node r21 = push(result(n21));
+				Node r22 = push(result(n22));
+
+				Node a = push(join(r00, r01, r10, r11));
+				Node b = push(join(r01, r02, r11, r12));
+				Node c = push(join(r10, r11, r20, r21));
+				Node d = push(join(r11, r12, r21, r22));
+				Node ra = push(result(a));
+				Node rb = push(result(b));
+				Node rc = push(result(c));
+				Node rd = push(result(d));
+				r = join(ra, rb, rc, rd);
+			} else {
+				// Slower than full speed: take the centres without advancing, then advance once
+				Node c00 = push(centredSubnode(n00));
+				Node c01 = push(centredSubnode(n01));
+				Node c02 = push(centredSubnode(n02));
+				Node c10 = push(centredSubnode(n10));
+				Node c11 = push(centredSubnode(n11));
+				Node c12 = push(centredSubnode(n12));
+				Node c20 = push(centredSubnode(n20));
+				Node c21 = push(centredSubnode(n21));
+				Node c22 = push(centredSubnode(n22));
+
+				Node a = push(join(c00, c01, c10, c11));
+				Node b = push(join(c01, c02, c11, c12));
+				Node c = push(join(c10, c11, c20, c21));
+				Node d = push(join(c11, c12, c21, c22));
+				Node ra = push(result(a));
+				Node rb = push(result(b));
+				Node rc = push(result(c));
+				Node rd = push(result(d));
+				r = join(ra, rb, rc, rd);
+			}
+		}
+
+		sp = mark;
+		if (full) {
+			n.result = r;
+		} else {
+			if (n.slower == null) {
+				n.slower = new Node[n.level - 2];
+			}
+			n.slower[stepExponent] = r;
+		}
+		return r;
+	}
+
+	// One generation of a 4x4 node, returning its centre 2x2
+	private Node baseResult(Node n) {
+		int bits = 0;
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 4; x++) {
+				if (cellAt(n, x, y) != 0) {
+					bits |= 1 << (y * 4 + x);
+				}
+			}
+		}
+		return join(nextCell(bits, 1, 1), nextCell(bits, 2, 1), nextCell(bits, 1, 2), nextCell(bits, 2, 2));
+	}
+
+	private Node nextCell(int bits, int x, int y) {
+		int window = 0;
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				window |= ((bits >>> ((y + dy) * 4 + x + dx)) & 1) << ((dy + 1) * 3 + dx + 1);
+			}
+		}
+		return nextStateTable[window] != 0 ? ALIVE : DEAD;
+	}
+
+	private Node centredHorizontal(Node w, Node e) {
+		return join(w.ne, e.nw, w.se, e.sw);
+	}
+
+	private Node centredVertical(Node n, Node s) {
+		return join(n.sw, n.se, s.nw, s.ne);
+	}
+
+	private Node centredSubnode(Node n) {
+		return join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+	}
+
+	private Node push(Node n) {
+		if (sp == stack.length) {
+			Node[] bigger = new Node[stack.length << 1];
+			System.arraycopy(stack, 0, bigger, 0, sp);
+			stack = bigger;
+		}
+		stack[sp++] = n;
+		return n;
+	}
+
+	// Forget every memoised result, needed when the rule changes
+	private void clearResults() {
+		for (Node head : buckets) {
+			for (Node n = head; n != null; n = n.chain) {
+				n.result = null;
+				n.slower = null;
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- garbage collection
+
+	private void maybeCollect() {
+		if (nodeCount > maxNodes) {
+			collect();
+		}
+	}
+
+	// This method drops every node not reachable from the root, the recursion stack or the empty nodes
+
+	void collect() {
+		mark(root);
+		for (int i = 0; i < sp; i++) {
+			mark(stack[i]);
+		}
+		for (Node e : empty) {
+			if (e != null) {
+				mark(e);
+			}
+		}
+
+		int live = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			Node kept = null;
+			for (Node n = buckets[i]; n != null;) {
+				Node next = n.chain;
+				if (n.marked) {
+					n.chain = kept;
+					kept = n;
+					live++;
+				}
+				n = next;
+			}
+			buckets[i] = kept;
+		}
+
+		// Results pointing at collected nodes are dropped, the rest stay memoised
+		for (Node head : buckets) {
+			for (Node n = head; n != null; n = n.chain) {
+				if (n.result != null && n.result.level > 0 && !n.result.marked) {
+					n.result = null;
+				}
+				if (n.slower != null) {
+					boolean any = false;
+					for (int j = 0; j < n.slower.length; j++) {
+						if (n.slower[j] != null && n.slower[j].level > 0 && !n.slower[j].marked) {
+							n.slower[j] = null;
+						}
+						any |= n.slower[j] != null;
+					}
+					if (!any) {
+						n.slower = null;
+					}
+				}
+			}
+		}
+		for (Node head : buckets) {
+			for (Node n = head; n != null; n = n.chain) {
+				n.marked = false;
+			}
+		}
+		nodeCount = live;
+
+		// With less than an eighth of the limit free, the table would be collected again after every few
+		// new nodes, so a pattern that large fails instead of crawling or growing past the limit
+		if (live > maxNodes - (maxNodes >>> 3)) {
+			throw new IllegalStateException("The pattern needs " + live + " hashlife nodes, too close to the limit of "
+					+ maxNodes + "; raise --hashlife-mb");
+		}
+	}
+
+	private static void mark(Node n) {
+		if (n.level == 0 || n.marked) {
+			return;
+		}
+		n.marked = true;
+		mark(n.nw);
+		mark(n.ne);
+		mark(n.sw);
+		mark(n.se);
+	}
+}
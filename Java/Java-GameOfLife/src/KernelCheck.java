@@ -0,0 +1,122 @@
+/**
+* <p>
+* Correctness check for the faster Board kernels. Random soups of awkward
+* sizes are stepped with the branching rules and with every other kernel,
+* under several rules, and the cells, state hashes and born and died counts
+* have to match after each generation. Every kernel and BitBoard must then
+* step a warmed-up board without allocating. Run it with
+* the same --add-modules flag as Main to include the vector kernel.
+* </p>
+*/
+
+public class KernelCheck {
+
+	private static final int[][] SIZES = { { 1, 1 }, { 1, 37 }, { 37, 1 }, { 3, 7 }, { 17, 15 }, { 64, 64 }, { 100, 33 }, { 257, 129 } };
+
+	private static final String[] RULES = { "B3/S23", "B36/S23", "B2/S", "B3678/S34678", "B0123/S012345678" };
+
+	private static final int GENERATIONS = 40;
+
+	// Steps run before and while allocation is measured
+	private static final int WARMUP_STEPS = 5000;
+	private static final int MEASURED_STEPS = 1000;
+
+	private KernelCheck() {
+	}
+
+	public static void main(String[] args) {
+		int failures = 0;
+		for (Board.Kernel kernel : Board.Kernel.values()) {
+			if (kernel == Board.Kernel.BRANCHING) {
+				continue;
+			}
+			if (kernel == Board.Kernel.VECTOR && !Board.isVectorKernelAvailable()) {
+				System.out.println(kernel + ": skipped, the Vector API is not available");
+				continue;
+			}
+			for (String rule : RULES) {
+				String result = check(kernel, Rule.parse(rule));
+				System.out.println(kernel + " " + rule + ": " + (result == null ? "ok" : result));
+				if (result != null) {
+					failures++;
+				}
+			}
+		}
+		failures += checkAllocation();
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	// This method asserts that no kernel allocates per step once warm and returns the number that did
+	static int checkAllocation() {
+		if (!AllocationMeter.isSupported()) {
+			System.out.println("allocation: skipped, this JVM cannot count allocated bytes per thread");
+			return 0;
+		}
+		int failures = 0;
+		for (Board.Kernel kernel : Board.Kernel.values()) {
+			if (kernel == Board.Kernel.VECTOR && !Board.isVectorKernelAvailable()) {
+				continue;
+			}
+			Board board = new Board(128, 128);
+			board.setKernel(kernel);
+			RandomSoup.fill(board, 0.35, 1);
+			failures += checkAllocation("Board.step " + kernel, board::step);
+		}
+		BitBoard bits = new BitBoard(128, 128);
+		RandomSoup.fill(bits, 0.35, 1);
+		failures += checkAllocation("BitBoard.step", bits::step);
+		return failures;
+	}
+
+	private static int checkAllocation(String name, Runnable step) {
+		try {
+			AllocationMeter.assertNoAllocation(name, step, WARMUP_STEPS, MEASURED_STEPS);
+			System.out.println(name + ": no allocation");
+			return 0;
+		} catch (IllegalStateException e) {
+			System.out.println(name + ": " + e.getMessage());
+			return 1;
+		}
+	}
+
+	// This method returns null when kernel matches the branching rules on every size, or the first difference
+	static String check(Board.Kernel kernel, Rule rule) {
+		for (int[] size : SIZES) {
+			for (long seed = 1; seed <= 3; seed++) {
+				Board expected = new Board(size[1], size[0]);
+				Board actual = new Board(size[1], size[0]);
+				expected.setRule(rule);
+				actual.setRule(rule);
+				actual.setKernel(kernel);
+				RandomSoup.fill(expected, 0.35, seed);
+				RandomSoup.fill(actual, 0.35, seed);
+				for (int g = 1; g <= GENERATIONS; g++) {
+					expected.step();
+					actual.step();
+					String where = size[0] + "x" + size[1] + " seed " + seed + " generation " + g;
+					long population = 0;
+					for (int x = 0; x < size[0]; x++) {
+						for (int y = 0; y < size[1]; y++) {
+							if (expected.getState(x, y) != actual.getState(x, y)) {
+								return "cell (" + x + ", " + y + ") differs on " + where;
+							}
+							population += expected.getState(x, y);
+						}
+					}
+					if (expected.getStateHash() != actual.getStateHash()) {
+						return "state hash differs on " + where;
+					}
+					if (expected.getBornCount() != actual.getBornCount() || expected.getDiedCount() != actual.getDiedCount()) {
+						return "born or died count differs on " + where;
+					}
+					if (expected.getPopulation() != population || actual.getPopulation() != population) {
+						return "population differs on " + where;
+					}
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,33 @@
+/**
+* <p>
+* Common surface of every Game of Life engine. Main only talks to a board
+* through this interface so the storage and stepping strategy can be switched
+* from the command line without touching the runner.
+* </p>
+*
+* Coordinates are (x, y) with x in [0, width) and y in [0, height). Cells
+* outside the board are always dead.
+*/
+
+public interface LifeBoard extends CellGrid {
+
+	// Set the cell at (x, y) alive
+	void setAlive(int x, int y);
+
+	// Set the cell at (x, y) dead
+	void setDead(int x, int y);
+
+	// Advance the board by one generation
+	void step();
+
+	// Print the whole board to the console
+	void print();
+
+	// Number of live cells, unbounded boards count the whole universe and not only the window
+	long getPopulation();
+
+	// Change the rule the board evolves by, Conway's B3/S23 until this is called
+	void setRule(Rule rule);
+
+	Rule getRule();
+}
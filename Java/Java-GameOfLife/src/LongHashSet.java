@@ -0,0 +1,169 @@
+/**
+* <p>
+* Open-addressing hash set of primitive longs. Keys are stored unboxed in a
+* single long[] with linear probing, so a set of cells costs 16 bytes per
+* entry at most and adding or looking up a key allocates nothing.
+* </p>
+*
+* Iterate with a slot index: for every slot below capacity() where
+* isUsed(slot) is true, keyAt(slot) is a member of the set.
+*/
+
+public class LongHashSet {
+
+	// Marks a free slot; the key with this value is tracked by hasEmptyKey instead
+	static final long EMPTY = Long.MIN_VALUE;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private int mask;
+	private int size;
+	private boolean hasEmptyKey;
+
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	public LongHashSet(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	public boolean add(long key) {
+		if (key == EMPTY) {
+			boolean added = !hasEmptyKey;
+			hasEmptyKey = true;
+			if (added) {
+				size++;
+			}
+			return added;
+		}
+		int slot = mix(key) & mask;
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		size++;
+		if (size * 2 > keys.length) {
+			rehash(keys.length << 1);
+		}
+		return true;
+	}
+
+	public boolean contains(long key) {
+		if (key == EMPTY) {
+			return hasEmptyKey;
+		}
+		int slot = mix(key) & mask;
+		long k;
+		while ((k = keys[slot]) != EMPTY) {
+			if (k == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public boolean remove(long key) {
+		if (key == EMPTY) {
+			boolean removed = hasEmptyKey;
+			hasEmptyKey = false;
+			if (removed) {
+				size--;
+			}
+			return removed;
+		}
+		int slot = mix(key) & mask;
+		while (keys[slot] != key) {
+			if (keys[slot] == EMPTY) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// Shift later keys of the same probe run back so lookups never stop at the hole
+		int hole = slot;
+		slot = (slot + 1) & mask;
+		while (keys[slot] != EMPTY) {
+			int home = mix(keys[slot]) & mask;
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				keys[hole] = keys[slot];
+				hole = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[hole] = EMPTY;
+		size--;
+		return true;
+	}
+
+	// Removes every key. The table shrinks when it is far larger than what it held, otherwise it is reused
+	public void clear() {
+		int wanted = tableSizeFor(size);
+		if (keys.length > wanted * 8) {
+			allocate(wanted);
+		} else {
+			java.util.Arrays.fill(keys, EMPTY);
+		}
+		size = 0;
+		hasEmptyKey = false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// Number of slots to iterate over, one more than the table so the EMPTY key gets a slot too
+	public int capacity() {
+		return keys.length + 1;
+	}
+
+	public boolean isUsed(int slot) {
+		return slot == keys.length ? hasEmptyKey : keys[slot] != EMPTY;
+	}
+
+	public long keyAt(int slot) {
+		return slot == keys.length ? EMPTY : keys[slot];
+	}
+
+	private void rehash(int newLength) {
+		long[] old = keys;
+		allocate(newLength);
+		for (long key : old) {
+			if (key != EMPTY) {
+				int slot = mix(key) & mask;
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+			}
+		}
+	}
+
+	private void allocate(int length) {
+		keys = new long[length];
+		java.util.Arrays.fill(keys, EMPTY);
+		mask = length - 1;
+	}
+
+	// Smallest power of two table that keeps the load factor at or below one half
+	static int tableSizeFor(int expectedSize) {
+		int length = MIN_CAPACITY;
+		while (length < expectedSize * 2L) {
+			length <<= 1;
+		}
+		return length;
+	}
+
+	// Spreads packed coordinates over the table, neighbouring cells differ only in low bits
+	static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -0,0 +1,123 @@
+/**
+* <p>
+* Open-addressing hash map from primitive long keys to int values, the
+* counting companion of LongHashSet. It only supports what neighbour counting
+* needs: increment, get, clear and slot iteration.
+* </p>
+*/
+
+public class LongIntHashMap {
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+	private boolean hasEmptyKey;
+	private int emptyKeyValue;
+
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	public LongIntHashMap(int expectedSize) {
+		allocate(LongHashSet.tableSizeFor(expectedSize));
+	}
+
+	// Adds one to the value of key, starting from 0, and returns the new value
+	public int increment(long key) {
+		if (key == LongHashSet.EMPTY) {
+			if (!hasEmptyKey) {
+				hasEmptyKey = true;
+				size++;
+			}
+			return ++emptyKeyValue;
+		}
+		int slot = LongHashSet.mix(key) & mask;
+		long k;
+		while ((k = keys[slot]) != LongHashSet.EMPTY) {
+			if (k == key) {
+				return ++values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = 1;
+		size++;
+		if (size * 2 > keys.length) {
+			rehash(keys.length << 1);
+		}
+		return 1;
+	}
+
+	public int get(long key) {
+		if (key == LongHashSet.EMPTY) {
+			return hasEmptyKey ? emptyKeyValue : 0;
+		}
+		int slot = LongHashSet.mix(key) & mask;
+		long k;
+		while ((k = keys[slot]) != LongHashSet.EMPTY) {
+			if (k == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+
+	// Removes every entry. The table shrinks when it is far larger than what it held, otherwise it is reused
+	public void clear() {
+		int wanted = LongHashSet.tableSizeFor(size);
+		if (keys.length > wanted * 8) {
+			allocate(wanted);
+		} else {
+			java.util.Arrays.fill(keys, LongHashSet.EMPTY);
+		}
+		size = 0;
+		hasEmptyKey = false;
+		emptyKeyValue = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// Number of slots to iterate over, see LongHashSet.capacity()
+	public int capacity() {
+		return keys.length + 1;
+	}
+
+	public boolean isUsed(int slot) {
+		return slot == keys.length ? hasEmptyKey : keys[slot] != LongHashSet.EMPTY;
+	}
+
+	public long keyAt(int slot) {
+		return slot == keys.length ? LongHashSet.EMPTY : keys[slot];
+	}
+
+	public int valueAt(int slot) {
+		return slot == keys.length ? emptyKeyValue : values[slot];
+	}
+
+	private void rehash(int newLength) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(newLength);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != LongHashSet.EMPTY) {
+				int slot = LongHashSet.mix(oldKeys[i]) & mask;
+				while (keys[slot] != LongHashSet.EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int length) {
+		keys = new long[length];
+		values = new int[length];
+		java.util.Arrays.fill(keys, LongHashSet.EMPTY);
+		mask = length - 1;
+	}
+}
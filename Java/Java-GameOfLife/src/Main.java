@@ -16,58 +16,97 @@
 
 
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 public class Main {
 
-	final static String IN_FILE = "..\\input.txt";
-	
 	public static void main(String[] args) throws InterruptedException {
 		
-		
-		
-		BufferedReader br = null;
-		int width;
-		int height;
-		int cellOne;
-		int cellTwo;		
+		Options options = Options.parse(args);
 		
 		try {
-			br = new BufferedReader(new FileReader(IN_FILE));
-			
-			String line;
-			
-			
-			height = Integer.parseInt(br.readLine());
-			width = Integer.parseInt(br.readLine());
+			if (options.mode.equals("batch")) {
+				runBatch(options);
+				return;
+			}
+			if (options.mode.equals("worker")) {
+				TileWorker.run(options);
+				return;
+			}
 
-			
-			Board bd = new Board(height,width);
-			
-			while ((line = br.readLine()) != null) {
-				String[] tokens = line.split("\n");
-				String[] str = tokens[0].split(" ");
-				char charOne = str[0].charAt(0);
-				char charTwo = str[1].charAt(0);
-				cellOne = Integer.parseInt(String.valueOf(charOne));
-				cellTwo = Integer.parseInt(String.valueOf(charTwo));				
-				bd.setAlive(cellOne, cellTwo);
+			long generation = 0;
+			Checkpoint resumed = options.resume ? Checkpoint.findLatest(options.checkpointDir, System.err) : null;
+			if (options.resume && resumed == null) {
+				System.err.println("No valid checkpoint in " + options.checkpointDir + ", starting from the beginning");
 			}
-			
-			br.close();
-			
 
-			int i = 1;
-			
-			while(true) {
-				bd.print();
-				bd.step();
-				System.out.println("Generation: " + i);
-				TimeUnit.SECONDS.sleep(1);
-				i++;
+			LifeBoard bd;
+			if (resumed != null) {
+				long start = System.nanoTime();
+				try {
+					bd = createBoard(options, resumed.getHeight(), resumed.getWidth());
+					resumed.restore(bd);
+					generation = resumed.getGeneration();
+				} finally {
+					resumed.close();
+				}
+				System.err.println("Resumed " + resumed.getWidth() + "x" + resumed.getHeight() + " at generation "
+						+ generation + " in " + String.format("%.3f", (System.nanoTime() - start) / 1e9) + " s");
+			} else if (options.fill > 0) {
+				bd = createBoard(options, options.height, options.width);
+				RandomSoup.fill(bd, options.fill, options.seed);
+			} else {
+				bd = PatternLoader.load(options.file, options.height, options.width,
+						(height, width) -> createBoard(options, height, width));
+			}
+			if (options.rule != null) {
+				bd.setRule(options.rule);
+			}
+
+			Checkpointer checkpoints = Checkpointer.start(options, generation);
+			if (options.mode.equals("headless")) {
+				Benchmark.run(bd, options, System.out, generation, checkpoints);
+				if (bd instanceof Closeable) {
+					((Closeable) bd).close();
+				}
+				return;
+			}
+
+			TerminalRenderer renderer = null;
+			if (options.render.equals("ansi")) {
+				renderer = new TerminalRenderer(System.out);
+				final TerminalRenderer shown = renderer;
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					try {
+						shown.close();
+					} catch (IOException e) {
+						// The terminal is going away anyway
+					}
+				}));
+			}
+
+			CycleDetector cycles = options.detectCycles > 0 ? new CycleDetector(options.detectCycles) : null;
+			SimulationMetrics metrics = SimulationMetrics.start(bd, options, generation);
+			try {
+				new FramePipeline(bd, options, renderer, cycles, metrics, checkpoints, generation).run();
+			} finally {
+				if (metrics != null) {
+					metrics.close();
+				}
+				if (checkpoints != null) {
+					checkpoints.close();
+				}
+				if (bd instanceof Closeable) {
+					((Closeable) bd).close();
+				}
 			}
 			
 		} catch (IOException e) {
@@ -78,6 +117,82 @@ public class Main {
 		
 
 
+	}
+
+	// This method runs the --mode=batch sweep, writing the CSV to --csv or to the console
+
+	static void runBatch(Options options) throws IOException {
+		long start = System.nanoTime();
+		if (options.csv == null) {
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII));
+			new BatchRunner(options, out).run();
+			return;
+		}
+		long boards;
+		try (Writer out = Files.newBufferedWriter(options.csv, StandardCharsets.US_ASCII)) {
+			boards = new BatchRunner(options, out).run();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(boards + " boards in " + String.format("%.3f", seconds) + " s on " + options.workers
+				+ " workers, results in " + options.csv);
+	}
+
+	// This method creates the board implementation selected with --engine
+
+	static LifeBoard createBoard(Options options, int height, int width) {
+		switch (options.engine) {
+		case "int":
+			Board board = new Board(height, width);
+			board.setThreads(options.threads);
+			board.setTileSize(options.tileSize);
+			board.setKernel(Board.Kernel.valueOf(options.kernel.equals("branch") ? "BRANCHING" : options.kernel.toUpperCase()));
+			if (options.kernel.equals("vector") && board.getKernel() != Board.Kernel.VECTOR) {
+				System.err.println("The Vector API is not available (run with --add-modules jdk.incubator.vector), using --kernel=table");
+			}
+			return board;
+		case "bit":
+			return new BitBoard(height, width);
+		case "halo":
+			return new HaloBoard(height, width, options.edges.equals("wrap"));
+		case "offheap":
+			try {
+				return options.offHeapFile == null
+						? new OffHeapBoard(height, width)
+						: new OffHeapBoard(height, width, options.offHeapFile);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		case "distributed":
+			try {
+				SocketTransport transport = new SocketTransport(InetAddress.getLoopbackAddress().getHostAddress(), options.port);
+				return DistributedBoard.start(height, width, options.edges.equals("wrap"), options.processes, options.spawn, transport);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		case "sparse":
+			return new SparseBoard(height, width);
+		case "hashlife":
+			return new HashLifeBoard(height, width, options.hashLifeMaxNodes());
+		default:
+			throw new IllegalArgumentException("Unknown engine: " + options.engine + " (expected int, bit, halo, offheap, sparse, hashlife or distributed)");
+		}
+	}
+
+	// This method advances the board by the given number of generations, hashlife jumps them in powers of two
+
+	static void advance(LifeBoard bd, long generations) {
+		if (bd instanceof HashLifeBoard) {
+			((HashLifeBoard) bd).advance(generations);
+			return;
+		}
+		if (bd instanceof DistributedBoard) {
+			// One round trip to the workers for the whole jump
+			((DistributedBoard) bd).advance(generations);
+			return;
+		}
+		for (long g = 0; g < generations; g++) {
+			bd.step();
+		}
 	}
 
 }
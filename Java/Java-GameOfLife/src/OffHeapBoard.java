@@ -0,0 +1,369 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+* <p>
+* Bit-packed board stored outside the Java heap, for boards far larger than
+* the heap such as 100,000 x 100,000. Rows are packed like BitBoard, one bit
+* per cell in 64-bit words, into native-order ByteBuffers of at most
+* MAX_CHUNK_BYTES holding a whole number of rows each. The buffers are either
+* direct memory or regions of a memory-mapped file. The garbage collector only
+* ever sees the few buffer objects, so it has nothing to scan or copy however
+* large the board is, and memory use is exactly two bits per cell.
+* </p>
+* <p>
+* A mapped board can be larger than physical memory: the operating system
+* pages the file in and out as step() sweeps over it row by row. Direct
+* buffers count against -XX:MaxDirectMemorySize, mapped ones do not.
+* </p>
+* <p>
+* The first checkpoint that is still being written when step() wants its
+* buffer back adds a third generation, in direct memory or as a third region
+* of the file, which is kept from then on.
+* </p>
+*/
+
+public class OffHeapBoard implements LifeBoard, StateHash, CellChurn, Checkpointable, Closeable {
+
+	// Largest buffer allocated or mapped at once
+	static final long MAX_CHUNK_BYTES = 1L << 30;
+
+	private final int width;
+	private final int height;
+
+	// Words per row and mask of the valid bits in the last word of every row
+	private final int words;
+	private final long lastMask;
+
+	// Row y lives in chunk y / rowsPerChunk at byte (y % rowsPerChunk) * rowBytes
+	private final int rowBytes;
+	private final int rowsPerChunk;
+
+	private ByteBuffer[] cells;
+
+	// Buffers the next generation is written to before they are swapped with cells
+	private ByteBuffer[] next;
+
+	// Generation pinned by freeze() until its view is released, and the buffers step() writes to
+	// instead when next is the pinned one
+	private volatile ByteBuffer[] frozen;
+	private ByteBuffer[] spare;
+
+	// Backing file of a mapped board, null for direct memory
+	private final FileChannel channel;
+
+	private Rule rule = Rule.CONWAY;
+	private BitRule bitRule = new BitRule(Rule.CONWAY);
+
+	// Zobrist hash and number of the live cells, updated only for cells that flip
+	private long stateHash;
+	private long population;
+
+	// Cells born and died in all steps so far
+	private long born;
+	private long died;
+
+	public OffHeapBoard(int height, int width) {
+		/*
+		 * Constructor to create an empty board with height and width in direct memory
+		 */
+		this.width = width;
+		this.height = height;
+		this.words = (width + 63) >>> 6;
+		this.lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+		this.rowBytes = words << 3;
+		this.rowsPerChunk = (int) Math.max(1, Math.min(height, MAX_CHUNK_BYTES / rowBytes));
+		this.channel = null;
+		this.cells = allocate();
+		this.next = allocate();
+	}
+
+	public OffHeapBoard(int height, int width, Path file) throws IOException {
+		/*
+		 * Constructor to create an empty board with height and width in a memory-mapped
+		 * file. The file is truncated and holds both generations one after the other
+		 */
+		this.width = width;
+		this.height = height;
+		this.words = (width + 63) >>> 6;
+		this.lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+		this.rowBytes = words << 3;
+		this.rowsPerChunk = (int) Math.max(1, Math.min(height, MAX_CHUNK_BYTES / rowBytes));
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		long generationBytes = (long) height * rowBytes;
+		this.cells = map(0);
+		this.next = map(generationBytes);
+	}
+
+	private int chunkCount() {
+		return (height + rowsPerChunk - 1) / rowsPerChunk;
+	}
+
+	private int chunkBytes(int chunk) {
+		return Math.min(rowsPerChunk, height - chunk * rowsPerChunk) * rowBytes;
+	}
+
+	private ByteBuffer[] allocate() {
+		ByteBuffer[] chunks = new ByteBuffer[chunkCount()];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = ByteBuffer.allocateDirect(chunkBytes(i)).order(ByteOrder.nativeOrder());
+		}
+		return chunks;
+	}
+
+	private ByteBuffer[] map(long start) throws IOException {
+		ByteBuffer[] chunks = new ByteBuffer[chunkCount()];
+		long position = start;
+		for (int i = 0; i < chunks.length; i++) {
+			int size = chunkBytes(i);
+			chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.nativeOrder());
+			position += size;
+		}
+		return chunks;
+	}
+
+	// Byte offset of word w of row y inside its chunk
+	private int offset(int y, int w) {
+		return (y % rowsPerChunk) * rowBytes + (w << 3);
+	}
+
+	public void setAlive(int x, int y) {
+		ByteBuffer chunk = cells[y / rowsPerChunk];
+		int i = offset(y, x >>> 6);
+		long word = chunk.getLong(i);
+		if ((word & (1L << x)) == 0) {
+			chunk.putLong(i, word | (1L << x));
+			stateHash ^= Zobrist.cellKey(x, y);
+			population++;
+		}
+	}
+
+	public void setDead(int x, int y) {
+		ByteBuffer chunk = cells[y / rowsPerChunk];
+		int i = offset(y, x >>> 6);
+		long word = chunk.getLong(i);
+		if ((word & (1L << x)) != 0) {
+			chunk.putLong(i, word & ~(1L << x));
+			stateHash ^= Zobrist.cellKey(x, y);
+			population--;
+		}
+	}
+
+	public int getState(int x, int y) {
+		if (x < 0 || x >= width) {
+			return 0;
+		}
+
+		if (y < 0 || y >= height) {
+			return 0;
+		}
+
+		return (int) (cells[y / rowsPerChunk].getLong(offset(y, x >>> 6)) >>> x) & 1;
+	}
+
+	// This method computes the next generation one 64-cell word at a time. The words of the three
+	// rows are read once each and slid along, so every word costs three buffer reads
+
+	public void step() {
+		if (next == frozen) {
+			ByteBuffer[] pinned = next;
+			next = spare != null ? spare : allocateSpare();
+			spare = pinned;
+		}
+		BitRule bitRule = this.bitRule;
+		long hash = stateHash;
+		long born = 0;
+		long died = 0;
+
+		for (int y = 0; y < height; y++) {
+			ByteBuffer mid = cells[y / rowsPerChunk];
+			ByteBuffer above = y > 0 ? cells[(y - 1) / rowsPerChunk] : null;
+			ByteBuffer below = y < height - 1 ? cells[(y + 1) / rowsPerChunk] : null;
+			ByteBuffer out = next[y / rowsPerChunk];
+			int midRow = offset(y, 0);
+			int aboveRow = y > 0 ? offset(y - 1, 0) : 0;
+			int belowRow = y < height - 1 ? offset(y + 1, 0) : 0;
+
+			// Words w - 1, w and w + 1 of the rows above, at and below y
+			long nPrev = 0;
+			long cPrev = 0;
+			long sPrev = 0;
+			long n = word(above, aboveRow, 0);
+			long c = word(mid, midRow, 0);
+			long s = word(below, belowRow, 0);
+
+			for (int w = 0; w < words; w++) {
+				long nNext = word(above, aboveRow, w + 1);
+				long cNext = word(mid, midRow, w + 1);
+				long sNext = word(below, belowRow, w + 1);
+
+				// Bit x of the west plane is the cell at x - 1, the east plane is x + 1
+				long state = bitRule.next(
+						(n << 1) | (nPrev >>> 63), n, (n >>> 1) | (nNext << 63),
+						(c << 1) | (cPrev >>> 63), c, (c >>> 1) | (cNext << 63),
+						(s << 1) | (sPrev >>> 63), s, (s >>> 1) | (sNext << 63));
+				if (w == words - 1) {
+					state &= lastMask;
+				}
+				out.putLong(midRow + (w << 3), state);
+
+				long flips = state ^ c;
+				born += Long.bitCount(flips & state);
+				died += Long.bitCount(flips & c);
+				while (flips != 0) {
+					hash ^= Zobrist.cellKey((w << 6) + Long.numberOfTrailingZeros(flips), y);
+					flips &= flips - 1;
+				}
+
+				nPrev = n;
+				cPrev = c;
+				sPrev = s;
+				n = nNext;
+				c = cNext;
+				s = sNext;
+			}
+		}
+		stateHash = hash;
+		this.born += born;
+		this.died += died;
+		population += born - died;
+
+		ByteBuffer[] swap = cells;
+		cells = next;
+		next = swap;
+	}
+
+	// Word w of the row at byte row of chunk, or 0 when it lies off the board
+	private long word(ByteBuffer chunk, int row, int w) {
+		if (chunk == null || w >= words) {
+			return 0L;
+		}
+		return chunk.getLong(row + (w << 3));
+	}
+
+	private ByteBuffer[] allocateSpare() {
+		if (channel == null) {
+			return allocate();
+		}
+		try {
+			return map(2L * height * rowBytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// This method pins the current generation for a checkpoint, see Checkpointable
+
+	public FrozenRows freeze() {
+		if (frozen != null) {
+			throw new IllegalStateException("A generation is already frozen");
+		}
+		final ByteBuffer[] pinned = cells;
+		frozen = pinned;
+		return new FrozenRows() {
+			public void copyRow(int y, long[] row) {
+				ByteBuffer chunk = pinned[y / rowsPerChunk];
+				int start = offset(y, 0);
+				for (int w = 0; w < words; w++) {
+					row[w] = chunk.getLong(start + (w << 3));
+				}
+			}
+
+			public void release() {
+				frozen = null;
+			}
+		};
+	}
+
+	// This method loads a checkpoint of the same size, the counts come from its header
+
+	public void restore(Checkpoint checkpoint) {
+		long[] row = new long[words];
+		long hash = 0;
+		long population = 0;
+		for (int y = 0; y < height; y++) {
+			checkpoint.readRow(y, row);
+			ByteBuffer chunk = cells[y / rowsPerChunk];
+			int start = offset(y, 0);
+			for (int w = 0; w < words; w++) {
+				chunk.putLong(start + (w << 3), row[w]);
+				population += Long.bitCount(row[w]);
+				if (!checkpoint.hasStateHash()) {
+					for (long bits = row[w]; bits != 0; bits &= bits - 1) {
+						hash ^= Zobrist.cellKey((w << 6) + Long.numberOfTrailingZeros(bits), y);
+					}
+				}
+			}
+		}
+		this.stateHash = checkpoint.hasStateHash() ? checkpoint.getStateHash() : hash;
+		this.population = population;
+		this.born = checkpoint.getBornCount();
+		this.died = checkpoint.getDiedCount();
+	}
+
+	public void setRule(Rule rule) {
+		this.rule = rule;
+		this.bitRule = new BitRule(rule);
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public void print() {
+		Board.clearConsole();
+		StringBuilder line = new StringBuilder(width + 2);
+		for (int y = 0; y < height; y++) {
+			line.setLength(0);
+			line.append(' ');
+			for (int x = 0; x < width; x++) {
+				line.append(getState(x, y) == 0 ? ' ' : '#');
+			}
+			line.append(' ');
+			System.out.println(line);
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	public long getPopulation() {
+		return population;
+	}
+
+	public long getBornCount() {
+		return born;
+	}
+
+	public long getDiedCount() {
+		return died;
+	}
+
+	public void setChurn(long born, long died) {
+		this.born = born;
+		this.died = died;
+	}
+
+	// Closes the backing file of a mapped board. The buffers themselves are released with this object
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,465 @@
+/**
+* <p>
+* Command line options of the Game of Life runner. Every option has the form
+* --name=value and falls back to its default when it is not given.
+* </p>
+*/
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class Options {
+
+	// Pattern file: RLE, Life 1.06 or the input.txt layout
+	Path file = Paths.get("..", "input.txt");
+
+	// Smallest board size, patterns smaller than this are centred on the board
+	int width = 0;
+	int height = 0;
+
+	// Board implementation: int, bit, halo, offheap, sparse, hashlife or distributed
+	String engine = "int";
+
+	// File the offheap engine maps its cells from, null keeps them in direct memory
+	Path offHeapFile = null;
+
+	// What lies beyond the edges of the halo and distributed engines: dead cells, or the opposite edge (wrap)
+	String edges = "dead";
+
+	// Distributed engine: number of worker processes, whether the coordinator starts them itself and
+	// the loopback port it accepts them on (0 picks a free one)
+	int processes = 2;
+	boolean spawn = true;
+	int port = 0;
+
+	// Worker mode: host:port of the coordinator to join
+	String coordinator = null;
+
+	// Worker threads of the parallel step, 1 steps on the main thread
+	int threads = 1;
+
+	// Cell evaluation of the int engine: branch (if/else rules) or table (3x3 lookup table)
+	String kernel = "branch";
+
+	// Rule from --rule, null keeps the rule of an RLE header or Conway's B3/S23
+	Rule rule = null;
+
+	// Side of the active-region tiles of the int engine, 0 recomputes every cell
+	int tileSize = 0;
+
+	// Console output: ansi redraws only changed cells, plain calls print() every frame
+	String render = "ansi";
+
+	// interactive renders every generation, headless runs the benchmark in Benchmark, batch runs BatchRunner
+	String mode = "interactive";
+
+	// Batch mode: boards simulated per density, the densities swept (null uses --fill), the
+	// worker threads and the CSV file the rows go to (null writes them to the console)
+	int boards = 1000;
+	double[] densities = null;
+	int workers = Runtime.getRuntime().availableProcessors();
+	Path csv = null;
+
+	// Headless run length: stop after this many generations or this many seconds, whichever comes first
+	long generations = Long.MAX_VALUE;
+	double durationSeconds = 0;
+
+	// Generations run before a headless measurement starts
+	long warmup = 0;
+
+	// Interactive and headless runs: publish SimulationMetrics as an MBean, and print a metrics line
+	// to standard error every this many seconds (0 prints none)
+	boolean jmx = false;
+	double metricsInterval = 0;
+
+	// Interactive and headless runs: write a checkpoint to this directory every this many
+	// generations, keeping the newest few, and with resume start from the newest valid one there
+	Path checkpointDir = null;
+	long checkpointEvery = 1000;
+	int checkpointKeep = 2;
+	boolean resume = false;
+
+	// Interactive and headless runs: stream every exportEvery-th generation to this .gif file or
+	// String.format() pattern of .png files, at exportScale pixels per character of the board fitted
+	// into exportColumns x exportRows characters. GIF frames last 1 / exportFps seconds and frames are
+	// dropped rather than let the run fall below exportRate generations per second (0 drops none)
+	String export = null;
+	long exportEvery = 1;
+	int exportScale = 2;
+	int exportColumns = 512;
+	int exportRows = 512;
+	double exportFps = 10;
+	double exportRate = 0;
+
+	// Headless runs: record every measured generation in a GenerationHistory with a keyframe every
+	// this many frames, 0 records none
+	int history = 0;
+
+	// When above 0 the board is a width x height random soup of this density instead of a pattern file
+	double fill = 0;
+	long seed = 1;
+
+	// Stop once the board dies out or repeats with a period up to this, 0 runs forever
+	int detectCycles = 0;
+
+	// Generations advanced between two printed frames
+	long jump = 1;
+
+	// Interactive mode: advances of --jump generations per second, and most frames drawn per second.
+	// 0 runs the simulation as fast as it goes; frames it outruns the renderer on are skipped
+	double rate = 1;
+	double fps = 30;
+
+	// Interactive mode: characters of board the terminal shows across and down, by default the size of
+	// $COLUMNS x $LINES less the margin and status line, the cell at the top-left corner of the window
+	// and board cells per character side, 0 fitting the whole board
+	int viewColumns = terminalSize("COLUMNS", 80) - 2;
+	int viewRows = terminalSize("LINES", 24) - 1;
+	int viewX = 0;
+	int viewY = 0;
+	int zoom = 1;
+
+	// Memory budget of the hashlife node table in megabytes
+	int hashLifeMegabytes = (int) ((long) HashLifeBoard.DEFAULT_MAX_NODES * HashLifeBoard.BYTES_PER_NODE >> 20);
+
+	public static Options parse(String[] args) {
+		Options options = new Options();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (!arg.startsWith("--") || eq < 0) {
+				throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+			}
+			String name = arg.substring(2, eq);
+			String value = arg.substring(eq + 1);
+
+			switch (name) {
+			case "file":
+				options.file = Paths.get(value);
+				break;
+			case "width":
+				options.width = Integer.parseInt(value);
+				break;
+			case "height":
+				options.height = Integer.parseInt(value);
+				break;
+			case "engine":
+				options.engine = value;
+				break;
+			case "offheap-file":
+				options.offHeapFile = Paths.get(value);
+				break;
+			case "edges":
+				options.edges = value;
+				break;
+			case "processes":
+				options.processes = Integer.parseInt(value);
+				break;
+			case "spawn":
+				options.spawn = Boolean.parseBoolean(value);
+				break;
+			case "port":
+				options.port = Integer.parseInt(value);
+				break;
+			case "coordinator":
+				options.coordinator = value;
+				break;
+			case "jump":
+				options.jump = Long.parseLong(value);
+				break;
+			case "rate":
+				options.rate = Double.parseDouble(value);
+				break;
+			case "fps":
+				options.fps = Double.parseDouble(value);
+				break;
+			case "viewport":
+				int x = value.indexOf('x');
+				if (x < 0) {
+					throw new IllegalArgumentException("--viewport must be <columns>x<rows>: " + value);
+				}
+				options.viewColumns = Integer.parseInt(value.substring(0, x));
+				options.viewRows = Integer.parseInt(value.substring(x + 1));
+				break;
+			case "view-x":
+				options.viewX = Integer.parseInt(value);
+				break;
+			case "view-y":
+				options.viewY = Integer.parseInt(value);
+				break;
+			case "zoom":
+				options.zoom = value.equals("fit") ? 0 : Integer.parseInt(value);
+				break;
+			case "threads":
+				options.threads = Integer.parseInt(value);
+				break;
+			case "kernel":
+				options.kernel = value;
+				break;
+			case "rule":
+				options.rule = Rule.parse(value);
+				break;
+			case "tile":
+				options.tileSize = Integer.parseInt(value);
+				break;
+			case "render":
+				options.render = value;
+				break;
+			case "mode":
+				options.mode = value;
+				break;
+			case "boards":
+				options.boards = Integer.parseInt(value);
+				break;
+			case "densities":
+				options.densities = parseDensities(value);
+				break;
+			case "workers":
+				options.workers = Integer.parseInt(value);
+				break;
+			case "csv":
+				options.csv = Paths.get(value);
+				break;
+			case "generations":
+				options.generations = Long.parseLong(value);
+				break;
+			case "duration":
+				options.durationSeconds = Double.parseDouble(value);
+				break;
+			case "jmx":
+				options.jmx = Boolean.parseBoolean(value);
+				break;
+			case "metrics-interval":
+				options.metricsInterval = Double.parseDouble(value);
+				break;
+			case "checkpoint-dir":
+				options.checkpointDir = Paths.get(value);
+				break;
+			case "checkpoint-every":
+				options.checkpointEvery = Long.parseLong(value);
+				break;
+			case "checkpoint-keep":
+				options.checkpointKeep = Integer.parseInt(value);
+				break;
+			case "resume":
+				options.resume = Boolean.parseBoolean(value);
+				break;
+			case "export":
+				options.export = value;
+				break;
+			case "export-every":
+				options.exportEvery = Long.parseLong(value);
+				break;
+			case "export-scale":
+				options.exportScale = Integer.parseInt(value);
+				break;
+			case "export-size":
+				int by = value.indexOf('x');
+				if (by < 0) {
+					throw new IllegalArgumentException("--export-size must be <columns>x<rows>: " + value);
+				}
+				options.exportColumns = Integer.parseInt(value.substring(0, by));
+				options.exportRows = Integer.parseInt(value.substring(by + 1));
+				break;
+			case "export-fps":
+				options.exportFps = Double.parseDouble(value);
+				break;
+			case "export-rate":
+				options.exportRate = Double.parseDouble(value);
+				break;
+			case "history":
+				options.history = Integer.parseInt(value);
+				break;
+			case "warmup":
+				options.warmup = Long.parseLong(value);
+				break;
+			case "fill":
+				options.fill = Double.parseDouble(value);
+				break;
+			case "seed":
+				options.seed = Long.parseLong(value);
+				break;
+			case "detect-cycles":
+				options.detectCycles = Integer.parseInt(value);
+				break;
+			case "hashlife-mb":
+				options.hashLifeMegabytes = Integer.parseInt(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: --" + name);
+			}
+		}
+		if (options.width < 0 || options.height < 0) {
+			throw new IllegalArgumentException("--width and --height must not be negative");
+		}
+		if (!options.render.equals("ansi") && !options.render.equals("plain")) {
+			throw new IllegalArgumentException("--render must be ansi or plain");
+		}
+		if (!options.mode.equals("interactive") && !options.mode.equals("headless") && !options.mode.equals("batch")
+				&& !options.mode.equals("worker")) {
+			throw new IllegalArgumentException("--mode must be interactive, headless, batch or worker");
+		}
+		if (options.mode.equals("worker") && options.coordinator == null) {
+			throw new IllegalArgumentException("--mode=worker needs --coordinator=<host:port>");
+		}
+		if (options.processes < 1) {
+			throw new IllegalArgumentException("--processes must be at least 1");
+		}
+		if (options.mode.equals("batch")) {
+			if (options.generations == Long.MAX_VALUE) {
+				throw new IllegalArgumentException("--mode=batch needs --generations");
+			}
+			if (options.width == 0 || options.height == 0) {
+				throw new IllegalArgumentException("--mode=batch needs --width and --height");
+			}
+			if (options.densities == null && options.fill <= 0) {
+				throw new IllegalArgumentException("--mode=batch needs --densities or --fill");
+			}
+			if (options.boards < 1 || options.workers < 1) {
+				throw new IllegalArgumentException("--boards and --workers must be at least 1");
+			}
+			if (options.engine.equals("hashlife") || options.engine.equals("distributed")) {
+				throw new IllegalArgumentException("--mode=batch needs a local engine with a state hash");
+			}
+			if (options.offHeapFile != null) {
+				// Every board of the sweep would map and truncate the same file
+				throw new IllegalArgumentException("--offheap-file cannot be used with --mode=batch, the boards would share the file");
+			}
+			if (options.threads > 1) {
+				// The boards of a sweep already run side by side on the --workers threads
+				throw new IllegalArgumentException("--threads cannot be used with --mode=batch, use --workers to run boards in parallel");
+			}
+		}
+		if (options.mode.equals("headless") && options.generations == Long.MAX_VALUE && options.durationSeconds <= 0) {
+			throw new IllegalArgumentException("--mode=headless needs --generations or --duration");
+		}
+		if (options.metricsInterval < 0) {
+			throw new IllegalArgumentException("--metrics-interval must not be negative");
+		}
+		if ((options.jmx || options.metricsInterval > 0)
+				&& !options.mode.equals("interactive") && !options.mode.equals("headless")) {
+			throw new IllegalArgumentException("--jmx and --metrics-interval apply to interactive and headless runs");
+		}
+		if (options.checkpointEvery < 1) {
+			throw new IllegalArgumentException("--checkpoint-every must be at least 1");
+		}
+		if (options.checkpointKeep < 1) {
+			throw new IllegalArgumentException("--checkpoint-keep must be at least 1");
+		}
+		if (options.resume && options.checkpointDir == null) {
+			throw new IllegalArgumentException("--resume needs --checkpoint-dir");
+		}
+		if (options.checkpointDir != null && !options.mode.equals("interactive") && !options.mode.equals("headless")) {
+			throw new IllegalArgumentException("--checkpoint-dir applies to interactive and headless runs");
+		}
+		if (options.checkpointDir != null && (options.engine.equals("sparse") || options.engine.equals("hashlife"))) {
+			throw new IllegalArgumentException("--checkpoint-dir needs a bounded engine, a checkpoint holds only the window of "
+					+ options.engine + " boards");
+		}
+		if (options.export != null) {
+			String lower = options.export.toLowerCase();
+			if (!lower.endsWith(".gif") && !(lower.endsWith(".png") && options.export.contains("%"))) {
+				throw new IllegalArgumentException("--export must be a .gif file or a .png pattern with the generation as %d, such as frames/gen-%06d.png");
+			}
+			if (!options.mode.equals("interactive") && !options.mode.equals("headless")) {
+				throw new IllegalArgumentException("--export applies to interactive and headless runs");
+			}
+		}
+		if (options.exportEvery < 1 || options.exportScale < 1 || options.exportColumns < 1 || options.exportRows < 1) {
+			throw new IllegalArgumentException("--export-every, --export-scale and --export-size must be at least 1");
+		}
+		if (options.exportFps <= 0 || options.exportRate < 0) {
+			throw new IllegalArgumentException("--export-fps must be above 0 and --export-rate must not be negative");
+		}
+		if (options.history < 0) {
+			throw new IllegalArgumentException("--history must not be negative");
+		}
+		if (options.history > 0 && !options.mode.equals("headless")) {
+			throw new IllegalArgumentException("--history applies to headless runs");
+		}
+		if (options.fill < 0 || options.fill > 1) {
+			throw new IllegalArgumentException("--fill must be between 0 and 1");
+		}
+		if (options.fill > 0 && (options.width == 0 || options.height == 0)) {
+			throw new IllegalArgumentException("--fill needs --width and --height");
+		}
+		if (options.jump < 1) {
+			throw new IllegalArgumentException("--jump must be at least 1");
+		}
+		if (options.rate < 0 || options.fps <= 0) {
+			throw new IllegalArgumentException("--rate must not be negative and --fps must be above 0");
+		}
+		if (options.viewColumns < 1 || options.viewRows < 1) {
+			throw new IllegalArgumentException("--viewport must be at least 1x1");
+		}
+		if (options.viewX < 0 || options.viewY < 0 || options.zoom < 0) {
+			throw new IllegalArgumentException("--view-x, --view-y and --zoom must not be negative");
+		}
+		if (options.threads < 1) {
+			throw new IllegalArgumentException("--threads must be at least 1");
+		}
+		if (options.threads > 1 && !options.engine.equals("int")) {
+			throw new IllegalArgumentException("--threads is only supported by the int engine");
+		}
+		if (!options.kernel.equals("branch") && !options.kernel.equals("table") && !options.kernel.equals("vector")) {
+			throw new IllegalArgumentException("--kernel must be branch, table or vector");
+		}
+		if (!options.kernel.equals("branch") && (options.tileSize > 0 || !options.engine.equals("int"))) {
+			throw new IllegalArgumentException("--kernel applies to the full-board step of the int engine, not to --tile");
+		}
+		if (options.rule != null && options.rule.bornFromNothing()
+				&& (options.engine.equals("sparse") || options.engine.equals("hashlife"))) {
+			throw new IllegalArgumentException("Rules with B0 need a bounded engine (int, bit, halo or offheap)");
+		}
+		if (options.offHeapFile != null && !options.engine.equals("offheap")) {
+			throw new IllegalArgumentException("--offheap-file is only used by the offheap engine");
+		}
+		if (!options.edges.equals("dead") && !options.edges.equals("wrap")) {
+			throw new IllegalArgumentException("--edges must be dead or wrap");
+		}
+		if (options.edges.equals("wrap") && !options.engine.equals("halo") && !options.engine.equals("distributed")) {
+			throw new IllegalArgumentException("--edges=wrap is only supported by the halo and distributed engines");
+		}
+		if (options.tileSize < 0) {
+			throw new IllegalArgumentException("--tile must not be negative");
+		}
+		if (options.tileSize > 0 && (options.threads > 1 || !options.engine.equals("int"))) {
+			throw new IllegalArgumentException("--tile is only supported by the single-threaded int engine");
+		}
+		if (options.detectCycles < 0) {
+			throw new IllegalArgumentException("--detect-cycles must not be negative");
+		}
+		if (options.detectCycles > 0 && (options.jump != 1 || options.engine.equals("hashlife"))) {
+			throw new IllegalArgumentException("--detect-cycles needs --jump=1 and an engine other than hashlife");
+		}
+		return options;
+	}
+
+	// Node limit of the hashlife table derived from its memory budget
+	int hashLifeMaxNodes() {
+		long nodes = ((long) hashLifeMegabytes << 20) / HashLifeBoard.BYTES_PER_NODE;
+		return (int) Math.min(Integer.MAX_VALUE, nodes);
+	}
+
+	// Comma-separated densities such as 0.1,0.2,0.3
+	private static double[] parseDensities(String value) {
+		String[] parts = value.split(",");
+		double[] densities = new double[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			densities[i] = Double.parseDouble(parts[i].trim());
+			if (densities[i] <= 0 || densities[i] > 1) {
+				throw new IllegalArgumentException("--densities must be between 0 (exclusive) and 1: " + value);
+			}
+		}
+		return densities;
+	}
+
+	// Terminal size the shell exported in the given variable, or fallback when it did not export it
+	private static int terminalSize(String variable, int fallback) {
+		String value = System.getenv(variable);
+		try {
+			return value != null ? Math.max(Integer.parseInt(value.trim()), 2) : fallback;
+		} catch (NumberFormatException e) {
+			return fallback;
+		}
+	}
+}
@@ -0,0 +1,388 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+* <p>
+* Streaming loader for pattern files. Three formats are recognised from the
+* file contents:
+* </p>
+* <ul>
+* <li>RLE: optional # comment lines, a "x = w, y = h" header with an optional
+* "rule = B3/S23" field that is applied to the board, then runs of b (dead),
+* o (alive) and $ (end of row) terminated by !</li>
+* <li>Life 1.06: a "#Life 1.06" first line followed by one "x y" pair per live
+* cell, coordinates may be negative</li>
+* <li>The original input.txt layout: height, width, then one "x y" pair per
+* live cell</li>
+* </ul>
+* <p>
+* Files are parsed byte by byte straight from NIO buffers, memory-mapped when
+* they are large, and every cell goes directly to the board, so loading
+* millions of cells allocates no per-line objects.
+* </p>
+*/
+
+public class PatternLoader {
+
+	// Creates the board once the loader knows how large it has to be
+	public interface BoardFactory {
+		LifeBoard create(int height, int width);
+	}
+
+	// Files at least this large are memory-mapped instead of read into a heap buffer
+	static final long MAP_THRESHOLD = 1L << 20;
+
+	// Largest region mapped at once, big files are walked window by window
+	static final long MAP_WINDOW = 1L << 30;
+
+	private PatternLoader() {
+	}
+
+	// This method loads the pattern in file into a board of at least minHeight by minWidth.
+	// RLE and Life 1.06 patterns are centred on the board, input.txt cells keep their coordinates.
+
+	public static LifeBoard load(Path file, int minHeight, int minWidth, BoardFactory factory) throws IOException {
+		try (ByteCursor in = new ByteCursor(file)) {
+			if (in.startsWith("#Life 1.06")) {
+				return loadLife106(in, minHeight, minWidth, factory);
+			}
+			in.skipBlankAndCommentLines();
+			int c = in.peek();
+			if (c == 'x') {
+				return loadRle(in, minHeight, minWidth, factory);
+			}
+			if (isDigit(c)) {
+				return loadPlain(in, minHeight, minWidth, factory);
+			}
+			throw in.error("Unrecognised pattern format");
+		}
+	}
+
+	// ---------------------------------------------------------------- formats
+
+	private static LifeBoard loadRle(ByteCursor in, int minHeight, int minWidth, BoardFactory factory) throws IOException {
+		in.expect('x');
+		in.expect('=');
+		int patternWidth = in.readInt();
+		in.expect(',');
+		in.expect('y');
+		in.expect('=');
+		int patternHeight = in.readInt();
+		int headerLine = in.line();
+		Rule rule = readRuleField(in);
+
+		int width = Math.max(patternWidth, minWidth);
+		int height = Math.max(patternHeight, minHeight);
+		LifeBoard board = factory.create(height, width);
+		if (rule != null) {
+			try {
+				board.setRule(rule);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage() + " at line " + headerLine);
+			}
+		}
+		int offsetX = (width - patternWidth) / 2;
+		int offsetY = (height - patternHeight) / 2;
+
+		int x = 0;
+		int y = 0;
+		int run = 0;
+		int c;
+		while ((c = in.next()) >= 0 && c != '!') {
+			if (isDigit(c)) {
+				run = run * 10 + (c - '0');
+				continue;
+			}
+			if (isSpace(c) || c == '\n') {
+				// Writers wrap lines at about 70 columns, also between a run count and its tag
+				continue;
+			}
+			int count = run == 0 ? 1 : run;
+			run = 0;
+			if (c == 'b' || c == '.') {
+				x += count;
+			} else if (c == '$') {
+				y += count;
+				x = 0;
+			} else if (c == '#') {
+				in.skipLine();
+			} else if (isLetter(c)) {
+				if (x + count > patternWidth || y >= patternHeight) {
+					throw in.error("Cell outside the " + patternWidth + "x" + patternHeight + " pattern");
+				}
+				for (int i = 0; i < count; i++) {
+					board.setAlive(offsetX + x + i, offsetY + y);
+				}
+				x += count;
+			} else {
+				throw in.error("Unexpected character '" + (char) c + "' in RLE data");
+			}
+		}
+		return board;
+	}
+
+	// Reads the rest of an RLE header line and returns its "rule = ..." field, or null when there is none
+	private static Rule readRuleField(ByteCursor in) throws IOException {
+		StringBuilder rest = new StringBuilder();
+		while (in.peek() >= 0 && in.peek() != '\n') {
+			rest.append((char) in.next());
+		}
+		String header = rest.toString();
+		int key = header.indexOf("rule");
+		if (key < 0) {
+			return null;
+		}
+		int equals = header.indexOf('=', key);
+		if (equals < 0) {
+			throw in.error("Expected '=' after rule");
+		}
+		int end = header.indexOf(',', equals);
+		String text = header.substring(equals + 1, end < 0 ? header.length() : end);
+		try {
+			return Rule.parse(text);
+		} catch (IllegalArgumentException e) {
+			throw in.error(e.getMessage());
+		} finally {
+			in.skipLine();
+		}
+	}
+
+	private static LifeBoard loadLife106(ByteCursor in, int minHeight, int minWidth, BoardFactory factory) throws IOException {
+		// First pass finds the bounding box so the board can be sized before any cell is set
+		long data = in.position();
+		int dataLine = in.line();
+		long minX = Long.MAX_VALUE;
+		long minY = Long.MAX_VALUE;
+		long maxX = Long.MIN_VALUE;
+		long maxY = Long.MIN_VALUE;
+		in.skipBlankAndCommentLines();
+		while (in.peek() >= 0) {
+			int x = in.readInt();
+			int y = in.readInt();
+			in.skipLine();
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+			in.skipBlankAndCommentLines();
+		}
+		if (minX > maxX) {
+			return factory.create(Math.max(1, minHeight), Math.max(1, minWidth));
+		}
+
+		long patternWidth = maxX - minX + 1;
+		long patternHeight = maxY - minY + 1;
+		if (patternWidth > Integer.MAX_VALUE || patternHeight > Integer.MAX_VALUE) {
+			throw new IOException("Pattern is too large: " + patternWidth + "x" + patternHeight);
+		}
+		int width = (int) Math.max(patternWidth, minWidth);
+		int height = (int) Math.max(patternHeight, minHeight);
+		LifeBoard board = factory.create(height, width);
+		long offsetX = (width - patternWidth) / 2 - minX;
+		long offsetY = (height - patternHeight) / 2 - minY;
+
+		in.seek(data, dataLine);
+		in.skipBlankAndCommentLines();
+		while (in.peek() >= 0) {
+			int x = in.readInt();
+			int y = in.readInt();
+			in.skipLine();
+			board.setAlive((int) (x + offsetX), (int) (y + offsetY));
+			in.skipBlankAndCommentLines();
+		}
+		return board;
+	}
+
+	private static LifeBoard loadPlain(ByteCursor in, int minHeight, int minWidth, BoardFactory factory) throws IOException {
+		int patternHeight = in.readInt();
+		in.skipBlankAndCommentLines();
+		int patternWidth = in.readInt();
+		int width = Math.max(patternWidth, minWidth);
+		int height = Math.max(patternHeight, minHeight);
+		LifeBoard board = factory.create(height, width);
+
+		in.skipBlankAndCommentLines();
+		while (in.peek() >= 0) {
+			int x = in.readInt();
+			int y = in.readInt();
+			in.skipLine();
+			if (x < 0 || x >= width || y < 0 || y >= height) {
+				throw in.error("Cell " + x + " " + y + " is outside the " + width + "x" + height + " board");
+			}
+			board.setAlive(x, y);
+			in.skipBlankAndCommentLines();
+		}
+		return board;
+	}
+
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isLetter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\t' || c == '\r';
+	}
+
+	// ---------------------------------------------------------------- input
+
+	// Reads a file one byte at a time from a heap buffer or a sliding memory-mapped window
+	static final class ByteCursor implements Closeable {
+		private final FileChannel channel;
+		private final long size;
+		private final boolean mapped;
+		private ByteBuffer buffer;
+
+		// File offset of buffer position 0
+		private long windowStart;
+
+		private int line = 1;
+
+		ByteCursor(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			size = channel.size();
+			mapped = size >= MAP_THRESHOLD;
+			if (mapped) {
+				map(0);
+			} else {
+				buffer = ByteBuffer.allocate((int) size);
+				while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+					// keep reading until the whole file is in the buffer
+				}
+				buffer.flip();
+			}
+		}
+
+		private void map(long start) throws IOException {
+			windowStart = start;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_WINDOW, size - start));
+		}
+
+		private boolean refill() throws IOException {
+			long end = windowStart + buffer.limit();
+			if (!mapped || end >= size) {
+				return false;
+			}
+			map(end);
+			return true;
+		}
+
+		int peek() throws IOException {
+			if (!buffer.hasRemaining() && !refill()) {
+				return -1;
+			}
+			return buffer.get(buffer.position()) & 0xFF;
+		}
+
+		int next() throws IOException {
+			if (!buffer.hasRemaining() && !refill()) {
+				return -1;
+			}
+			int c = buffer.get() & 0xFF;
+			if (c == '\n') {
+				line++;
+			}
+			return c;
+		}
+
+		long position() {
+			return windowStart + buffer.position();
+		}
+
+		int line() {
+			return line;
+		}
+
+		// Moves back to a position taken earlier with position(), line is the line number there
+		void seek(long position, int line) throws IOException {
+			if (position < windowStart || position > windowStart + buffer.limit()) {
+				map(position);
+			} else {
+				buffer.position((int) (position - windowStart));
+			}
+			this.line = line;
+		}
+
+		boolean startsWith(String prefix) throws IOException {
+			if (size < prefix.length()) {
+				return false;
+			}
+			for (int i = 0; i < prefix.length(); i++) {
+				if ((buffer.get(i) & 0xFF) != prefix.charAt(i)) {
+					return false;
+				}
+			}
+			skipLine();
+			return true;
+		}
+
+		void skipLine() throws IOException {
+			int c;
+			while ((c = next()) >= 0 && c != '\n') {
+				// skip to the end of the line
+			}
+		}
+
+		void skipSpaces() throws IOException {
+			while (isSpace(peek())) {
+				next();
+			}
+		}
+
+		// Skips whitespace, empty lines and lines starting with #
+		void skipBlankAndCommentLines() throws IOException {
+			while (true) {
+				int c = peek();
+				if (isSpace(c) || c == '\n') {
+					next();
+				} else if (c == '#') {
+					skipLine();
+				} else {
+					return;
+				}
+			}
+		}
+
+		void expect(char expected) throws IOException {
+			skipSpaces();
+			int c = next();
+			if (c != expected) {
+				throw error("Expected '" + expected + "' but found " + (c < 0 ? "end of file" : "'" + (char) c + "'"));
+			}
+		}
+
+		int readInt() throws IOException {
+			skipSpaces();
+			boolean negative = false;
+			if (peek() == '-' || peek() == '+') {
+				negative = next() == '-';
+			}
+			if (!isDigit(peek())) {
+				throw error("Expected a number");
+			}
+			long value = 0;
+			while (isDigit(peek())) {
+				value = value * 10 + (next() - '0');
+				if (value > Integer.MAX_VALUE) {
+					throw error("Number out of range");
+				}
+			}
+			return (int) (negative ? -value : value);
+		}
+
+		IOException error(String message) {
+			return new IOException(message + " at line " + line);
+		}
+
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,16 @@
+/**
+* <p>
+* Boards whose cells are slow to read one at a time, because they are held by
+* other processes. A caller about to read a sparse lattice of cells with
+* getState(), such as the window of a Viewport, names its columns and rows
+* first. The board then fetches only the cells where those meet, in one round
+* trip, instead of the whole board.
+* </p>
+*/
+
+public interface Prefetchable {
+
+	// This method fetches every cell (columns[i], rows[j]). Both arrays are ascending and on the board.
+	// getState() serves those cells from the fetched copy until the board next changes
+	void prefetch(int[] columns, int[] rows);
+}
@@ -0,0 +1,26 @@
+import java.util.SplittableRandom;
+
+/**
+* <p>
+* Fills a board with a random soup: every cell is set alive independently
+* with the given density. The same seed always gives the same soup, so runs of
+* different engines can be compared cell for cell.
+* </p>
+*/
+
+public class RandomSoup {
+
+	private RandomSoup() {
+	}
+
+	public static void fill(LifeBoard board, double density, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int y = 0; y < board.getHeight(); y++) {
+			for (int x = 0; x < board.getWidth(); x++) {
+				if (random.nextDouble() < density) {
+					board.setAlive(x, y);
+				}
+			}
+		}
+	}
+}
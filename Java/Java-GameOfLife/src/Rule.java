@@ -0,0 +1,131 @@
+/**
+* <p>
+* Outer-totalistic Life-like rule such as B3/S23. A rule is stored as two
+* 9-bit masks: bit n of the birth mask is set when a dead cell with n live
+* neighbours comes alive, bit n of the survival mask when a live cell with n
+* live neighbours stays alive. The engines turn the masks into their own
+* tables once, so no rule object is consulted per cell.
+* </p>
+*
+* Rules are written as "B36/S23" (case does not matter, either part may be
+* empty), in the older "S/B" form "23/36" used by some RLE files, or by one of
+* the names conway, highlife, seeds and daynight.
+*/
+
+public final class Rule {
+
+	public static final Rule CONWAY = new Rule(1 << 3, (1 << 2) | (1 << 3));
+
+	private final int birth;
+	private final int survival;
+
+	private Rule(int birth, int survival) {
+		this.birth = birth;
+		this.survival = survival;
+	}
+
+	// This method parses a rule string, see the class comment for the accepted forms
+
+	public static Rule parse(String text) {
+		String rule = text.trim().toUpperCase();
+		switch (rule) {
+		case "CONWAY":
+		case "LIFE":
+			return CONWAY;
+		case "HIGHLIFE":
+			return parse("B36/S23");
+		case "SEEDS":
+			return parse("B2/S");
+		case "DAYNIGHT":
+			return parse("B3678/S34678");
+		default:
+			break;
+		}
+
+		int slash = rule.indexOf('/');
+		if (slash < 0 || rule.indexOf('/', slash + 1) >= 0) {
+			throw new IllegalArgumentException("Rule must look like B3/S23: " + text);
+		}
+		String first = rule.substring(0, slash);
+		String second = rule.substring(slash + 1);
+		if (first.startsWith("B") && second.startsWith("S")) {
+			return new Rule(counts(first.substring(1), text), counts(second.substring(1), text));
+		}
+		if (first.startsWith("S") && second.startsWith("B")) {
+			return new Rule(counts(second.substring(1), text), counts(first.substring(1), text));
+		}
+		// S/B form without letters
+		return new Rule(counts(second, text), counts(first, text));
+	}
+
+	private static int counts(String digits, String text) {
+		int mask = 0;
+		for (int i = 0; i < digits.length(); i++) {
+			char c = digits.charAt(i);
+			if (c < '0' || c > '8') {
+				throw new IllegalArgumentException("Neighbour counts in a rule must be 0 to 8: " + text);
+			}
+			mask |= 1 << (c - '0');
+		}
+		return mask;
+	}
+
+	public int getBirthMask() {
+		return birth;
+	}
+
+	public int getSurvivalMask() {
+		return survival;
+	}
+
+	// True when dead cells with no live neighbours are born, which an unbounded universe cannot represent
+	public boolean bornFromNothing() {
+		return (birth & 1) != 0;
+	}
+
+	public boolean isConway() {
+		return equals(CONWAY);
+	}
+
+	// Next state of a cell from its state (0 or 1) and its number of live neighbours
+	public int nextState(int alive, int neighbours) {
+		return ((alive != 0 ? survival : birth) >>> neighbours) & 1;
+	}
+
+	// Next state of the centre cell for every 3x3 neighbourhood packed into 9 bits, centre cell in bit 4
+	public int[] neighbourhoodTable() {
+		int[] table = new int[512];
+		for (int window = 0; window < 512; window++) {
+			int alive = (window >>> 4) & 1;
+			table[window] = nextState(alive, Integer.bitCount(window) - alive);
+		}
+		return table;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof Rule && ((Rule) other).birth == birth && ((Rule) other).survival == survival;
+	}
+
+	@Override
+	public int hashCode() {
+		return birth * 31 + survival;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("B");
+		for (int n = 0; n <= 8; n++) {
+			if ((birth & (1 << n)) != 0) {
+				text.append(n);
+			}
+		}
+		text.append("/S");
+		for (int n = 0; n <= 8; n++) {
+			if ((survival & (1 << n)) != 0) {
+				text.append(n);
+			}
+		}
+		return text.toString();
+	}
+}
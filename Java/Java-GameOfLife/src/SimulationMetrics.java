@@ -0,0 +1,268 @@
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+* <p>
+* Per-generation instrumentation of a run: a histogram of step times, the
+* live-cell count, cells born and died and generations per second. The loop
+* that advances the board calls record() after every advance; the readings
+* are published as the SimulationMetricsMBean and, with --metrics-interval,
+* as one key=value line on standard error per interval.
+* </p>
+*
+* Nothing here exists unless --jmx or --metrics-interval is given: the loops
+* then skip even the clock reads, so a run without metrics pays one null
+* check per advance. Born and died come from boards that implement CellChurn,
+* the others report -1.
+*/
+
+public class SimulationMetrics implements SimulationMetricsMBean, Closeable {
+
+	static final String OBJECT_NAME = "GameOfLife:type=SimulationMetrics";
+
+	private final String engine;
+	private final String rule;
+	private final CellChurn churn;
+	private final StepTimeHistogram stepTimes = new StepTimeHistogram();
+
+	// Readings of the last advance, written only by the thread that calls record()
+	private volatile long generation;
+	private volatile long population;
+	private volatile long bornLast;
+	private volatile long diedLast;
+	private volatile long bornTotal;
+	private volatile long diedTotal;
+	private volatile double generationsPerSecond;
+
+	// Churn counts of the board when the run started, which the totals are counted from
+	private final long bornBase;
+	private final long diedBase;
+
+	// Start of the current one-second window of getGenerationsPerSecond() and the generations in it
+	private long rateStart;
+	private long rateGenerations;
+
+	private ObjectName registered;
+	private ScheduledExecutorService logger;
+
+	// Readings at the previous log line, the next one reports the interval since
+	private long[] loggedCounts = new long[StepTimeHistogram.BUCKETS];
+	private long loggedGeneration;
+	private long loggedBorn;
+	private long loggedDied;
+	private long loggedNanos;
+
+	public SimulationMetrics(LifeBoard board, String engine, long generation) {
+		this.engine = engine;
+		this.rule = board.getRule().toString();
+		this.churn = board instanceof CellChurn ? (CellChurn) board : null;
+		this.bornBase = churn != null ? churn.getBornCount() : 0;
+		this.diedBase = churn != null ? churn.getDiedCount() : 0;
+		long unknown = churn != null ? 0 : -1;
+		this.bornLast = unknown;
+		this.diedLast = unknown;
+		this.bornTotal = unknown;
+		this.diedTotal = unknown;
+		this.generation = generation;
+		this.population = board.getPopulation();
+		this.rateStart = System.nanoTime();
+		this.loggedGeneration = generation;
+		this.loggedNanos = rateStart;
+	}
+
+	// This method creates the metrics asked for by --jmx and --metrics-interval for a run starting at
+	// generation, or returns null when neither was given
+
+	public static SimulationMetrics start(LifeBoard board, Options options, long generation) {
+		if (!options.jmx && options.metricsInterval <= 0) {
+			return null;
+		}
+		SimulationMetrics metrics = new SimulationMetrics(board, options.engine, generation);
+		if (options.jmx) {
+			metrics.register();
+		}
+		if (options.metricsInterval > 0) {
+			metrics.startLog(System.err, options.metricsInterval);
+		}
+		return metrics;
+	}
+
+	// This method records an advance of generations that started at System.nanoTime() start and left
+	// the board at generation. Only the thread that advances the board may call it
+
+	public void record(LifeBoard board, long generation, long generations, long start) {
+		long now = System.nanoTime();
+		stepTimes.record((now - start) / generations, generations);
+		this.generation = generation;
+		this.population = board.getPopulation();
+		if (churn != null) {
+			long born = churn.getBornCount() - bornBase;
+			long died = churn.getDiedCount() - diedBase;
+			bornLast = born - bornTotal;
+			diedLast = died - diedTotal;
+			bornTotal = born;
+			diedTotal = died;
+		}
+
+		rateGenerations += generations;
+		if (now - rateStart >= 1_000_000_000L) {
+			generationsPerSecond = rateGenerations * 1e9 / (now - rateStart);
+			rateStart = now;
+			rateGenerations = 0;
+		}
+	}
+
+	// Registers this object with the platform MBean server, where jconsole or any JMX client finds it
+	public void register() {
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			registered = name;
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+		}
+	}
+
+	// This method prints logLine() to out every given number of seconds on a daemon thread
+
+	public void startLog(PrintStream out, double seconds) {
+		long period = Math.max(1, (long) (seconds * 1e9));
+		logger = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "metrics-log");
+			thread.setDaemon(true);
+			return thread;
+		});
+		logger.scheduleAtFixedRate(() -> out.println(logLine()), period, period, TimeUnit.NANOSECONDS);
+	}
+
+	// This method describes the interval since the previous call: generations per second, step-time
+	// percentiles and the born and died counts over the interval, and the generation and population now
+
+	synchronized String logLine() {
+		long now = System.nanoTime();
+		long generation = this.generation;
+		long born = bornTotal;
+		long died = diedTotal;
+		long[] counts = stepTimes.snapshot();
+		long[] interval = new long[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			interval[i] = counts[i] - loggedCounts[i];
+		}
+		double seconds = Math.max(now - loggedNanos, 1) / 1e9;
+
+		String line = "metrics generation=" + generation
+				+ " generations/s=" + String.format("%.1f", (generation - loggedGeneration) / seconds)
+				+ " population=" + population
+				+ " born=" + (churn != null ? born - loggedBorn : -1)
+				+ " died=" + (churn != null ? died - loggedDied : -1)
+				+ " step-p50=" + micros(StepTimeHistogram.percentile(interval, 0.5)) + "us"
+				+ " step-p99=" + micros(StepTimeHistogram.percentile(interval, 0.99)) + "us"
+				+ " step-max=" + micros(StepTimeHistogram.percentile(interval, 1)) + "us";
+
+		loggedCounts = counts;
+		loggedGeneration = generation;
+		loggedBorn = born;
+		loggedDied = died;
+		loggedNanos = now;
+		return line;
+	}
+
+	private static String micros(long nanos) {
+		return String.format("%.1f", nanos / 1e3);
+	}
+
+	// Stops the log and unregisters the MBean
+	public void close() {
+		if (logger != null) {
+			logger.shutdownNow();
+			logger = null;
+		}
+		if (registered != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+			} catch (JMException e) {
+				// Already gone
+			}
+			registered = null;
+		}
+	}
+
+	public String getEngine() {
+		return engine;
+	}
+
+	public String getRule() {
+		return rule;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public double getGenerationsPerSecond() {
+		return generationsPerSecond;
+	}
+
+	public long getPopulation() {
+		return population;
+	}
+
+	public long getBornLastAdvance() {
+		return bornLast;
+	}
+
+	public long getDiedLastAdvance() {
+		return diedLast;
+	}
+
+	public long getBornTotal() {
+		return bornTotal;
+	}
+
+	public long getDiedTotal() {
+		return diedTotal;
+	}
+
+	public long getStepCount() {
+		return stepTimes.getCount();
+	}
+
+	public double getStepTimeMeanMicros() {
+		return stepTimes.getMean() / 1e3;
+	}
+
+	public double getStepTimeP50Micros() {
+		return stepTimes.percentile(0.5) / 1e3;
+	}
+
+	public double getStepTimeP90Micros() {
+		return stepTimes.percentile(0.9) / 1e3;
+	}
+
+	public double getStepTimeP99Micros() {
+		return stepTimes.percentile(0.99) / 1e3;
+	}
+
+	public double getStepTimeMaxMicros() {
+		return stepTimes.getMax() / 1e3;
+	}
+
+	public long[] getStepTimeHistogram() {
+		return stepTimes.snapshot();
+	}
+
+	public long[] getStepTimeBucketUpperBoundsNanos() {
+		long[] bounds = new long[StepTimeHistogram.BUCKETS];
+		for (int i = 0; i < bounds.length; i++) {
+			bounds[i] = StepTimeHistogram.upperBound(i);
+		}
+		return bounds;
+	}
+}
@@ -0,0 +1,47 @@
+/**
+* <p>
+* Management interface of SimulationMetrics, registered with the platform
+* MBean server as GameOfLife:type=SimulationMetrics. Times are per generation
+* in microseconds; born and died are -1 on engines that do not count them.
+* </p>
+*/
+
+public interface SimulationMetricsMBean {
+
+	String getEngine();
+
+	String getRule();
+
+	long getGeneration();
+
+	// Generations advanced over the last full second
+	double getGenerationsPerSecond();
+
+	long getPopulation();
+
+	// Cells born and died in the last advance, and in all advances since the run started
+	long getBornLastAdvance();
+
+	long getDiedLastAdvance();
+
+	long getBornTotal();
+
+	long getDiedTotal();
+
+	long getStepCount();
+
+	double getStepTimeMeanMicros();
+
+	double getStepTimeP50Micros();
+
+	double getStepTimeP90Micros();
+
+	double getStepTimeP99Micros();
+
+	double getStepTimeMaxMicros();
+
+	// Counts of the step-time histogram, and the largest nanosecond value of each of its buckets
+	long[] getStepTimeHistogram();
+
+	long[] getStepTimeBucketUpperBoundsNanos();
+}
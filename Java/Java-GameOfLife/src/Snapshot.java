@@ -0,0 +1,203 @@
+import java.util.Arrays;
+
+/**
+* <p>
+* Immutable copy of a board at one generation, one bit per cell in row-major
+* order, together with the status line to show under it. The simulator thread
+* captures one after every advance and hands it to the renderer, which can
+* then draw it at its leisure while the board itself moves on.
+* </p>
+* <p>
+* A snapshot captured through a Viewport only holds the window, one density
+* level per character instead of one bit per cell, so its cost depends on the
+* size of the window and not of the board. Blocks of up to SAMPLES x SAMPLES
+* cells are counted exactly. Larger ones are sampled at SAMPLES x SAMPLES
+* evenly spread cells.
+* </p>
+*/
+
+public final class Snapshot implements CellGrid {
+
+	// Character of each density level, from no live cells to all of them
+	static final byte[] GLYPHS = { ' ', '.', ':', '+', '#' };
+	static final int MAX_LEVEL = GLYPHS.length - 1;
+
+	// Cells counted along each side of a zoomed-out block
+	static final int SAMPLES = 4;
+
+	private final int width;
+	private final int height;
+	private final long generation;
+	private final String status;
+
+	// True for the last snapshot of a run, published when the board has settled
+	private final boolean last;
+
+	// Cell (x, y) is bit (y * width + x) & 63 of word (y * width + x) / 64, null for a viewport capture
+	private final long[] cells;
+
+	// Density level of character (x, y) at y * width + x, null for a full capture
+	private final byte[] levels;
+
+	private Snapshot(int width, int height, long generation, String status, boolean last, long[] cells,
+			byte[] levels) {
+		this.width = width;
+		this.height = height;
+		this.generation = generation;
+		this.status = status;
+		this.last = last;
+		this.cells = cells;
+		this.levels = levels;
+	}
+
+	// This method copies every cell of the board. It must run on the thread that steps the board
+
+	public static Snapshot capture(LifeBoard board, long generation, String status, boolean last) {
+		int width = board.getWidth();
+		int height = board.getHeight();
+		long[] cells = new long[(int) (((long) width * height + 63) >>> 6)];
+		long index = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, index++) {
+				cells[(int) (index >>> 6)] |= (long) board.getState(x, y) << index;
+			}
+		}
+		return new Snapshot(width, height, generation, status, last, cells, null);
+	}
+
+	// This method copies the window of the board that viewport shows, one density level per character.
+	// It must run on the thread that steps the board
+
+	public static Snapshot capture(LifeBoard board, Viewport viewport, long generation, String status, boolean last) {
+		int columns = viewport.visibleColumns(board.getWidth());
+		int rows = viewport.visibleRows(board.getHeight());
+		int zoom = viewport.getZoom();
+		byte[] levels = new byte[columns * rows];
+
+		// Offsets of the counted cells inside a block, every cell of a small block
+		int samples = Math.min(zoom, SAMPLES);
+		int[] offsets = new int[samples];
+		for (int i = 0; i < samples; i++) {
+			offsets[i] = (int) ((2L * i + 1) * zoom / (2 * samples));
+		}
+		if (board instanceof Prefetchable) {
+			((Prefetchable) board).prefetch(sampled(viewport.getX(), columns, zoom, offsets, board.getWidth()),
+					sampled(viewport.getY(), rows, zoom, offsets, board.getHeight()));
+		}
+
+		if (zoom == 1) {
+			for (int row = 0; row < rows; row++) {
+				for (int column = 0; column < columns; column++) {
+					int state = board.getState(viewport.getX() + column, viewport.getY() + row);
+					levels[row * columns + column] = (byte) (state * MAX_LEVEL);
+				}
+			}
+			return new Snapshot(columns, rows, generation, status, last, null, levels);
+		}
+
+		for (int row = 0; row < rows; row++) {
+			int y0 = viewport.getY() + row * zoom;
+			for (int column = 0; column < columns; column++) {
+				int x0 = viewport.getX() + column * zoom;
+				int live = 0;
+				int counted = 0;
+				for (int dy : offsets) {
+					if (y0 + dy >= board.getHeight()) {
+						break;
+					}
+					for (int dx : offsets) {
+						if (x0 + dx >= board.getWidth()) {
+							break;
+						}
+						live += board.getState(x0 + dx, y0 + dy);
+						counted++;
+					}
+				}
+				// Any live cell shows, partly live blocks share the levels in between and only a full one
+				// gets the top level
+				int level = live == 0 ? 0 : (live * (MAX_LEVEL - 1) + counted - 1) / counted;
+				levels[row * columns + column] = (byte) (live == counted ? MAX_LEVEL : level);
+			}
+		}
+		return new Snapshot(columns, rows, generation, status, last, null, levels);
+	}
+
+	// Board columns, or rows, that capture() reads for count characters starting at start, in order
+	private static int[] sampled(int start, int count, int zoom, int[] offsets, int size) {
+		int[] cells = new int[count * offsets.length];
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			for (int offset : offsets) {
+				long cell = start + (long) i * zoom + offset;
+				if (cell < size) {
+					cells[n++] = (int) cell;
+				}
+			}
+		}
+		return Arrays.copyOf(cells, n);
+	}
+
+	// Wraps cells laid out as in this class without copying them; the caller must not change them afterwards
+	static Snapshot of(int width, int height, long generation, String status, boolean last, long[] cells) {
+		return new Snapshot(width, height, generation, status, last, cells, null);
+	}
+
+	public int getState(int x, int y) {
+		if (x < 0 || x >= width) {
+			return 0;
+		}
+
+		if (y < 0 || y >= height) {
+			return 0;
+		}
+
+		if (levels != null) {
+			return levels[y * width + x] == 0 ? 0 : 1;
+		}
+		long index = (long) y * width + x;
+		return (int) (cells[(int) (index >>> 6)] >>> index) & 1;
+	}
+
+	// Density level of a character from 0 to MAX_LEVEL, a cell of a full capture is 0 or MAX_LEVEL
+	public int getLevel(int x, int y) {
+		if (levels != null) {
+			return levels[y * width + x];
+		}
+		return getState(x, y) * MAX_LEVEL;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public boolean isLast() {
+		return last;
+	}
+
+	// Prints the cells like LifeBoard.print(), zoomed-out blocks with their density glyph
+	public void print() {
+		Board.clearConsole();
+		StringBuilder line = new StringBuilder(width + 2);
+		for (int y = 0; y < height; y++) {
+			line.setLength(0);
+			line.append(' ');
+			for (int x = 0; x < width; x++) {
+				line.append((char) GLYPHS[getLevel(x, y)]);
+			}
+			line.append(' ');
+			System.out.println(line);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+* <p>
+* Bounded ring buffer of snapshots between one simulator thread and one
+* renderer. publish() never waits: when the ring is full the oldest snapshot
+* is overwritten, so a slow terminal can never hold the simulation back.
+* takeLatest() hands the renderer the newest snapshot and skips every older
+* one it has not drawn yet, since those frames are already stale.
+* </p>
+*
+* Either side can end the run: the simulator with finish() or fail() once it
+* has published its last snapshot, the renderer with close() when it stops
+* drawing, after which the simulator's isClosed() turns true.
+*/
+
+public class SnapshotRing {
+
+	private final Snapshot[] slots;
+
+	// Snapshots ever published and ever taken or skipped, slot i % slots.length holds snapshot i
+	private long published;
+	private long consumed;
+
+	private long dropped;
+	private boolean finished;
+	private boolean closed;
+	private Throwable failure;
+
+	public SnapshotRing(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Ring capacity must be at least 1: " + capacity);
+		}
+		this.slots = new Snapshot[capacity];
+	}
+
+	// This method adds a snapshot, overwriting the oldest one when the renderer has fallen a full ring behind
+
+	public synchronized void publish(Snapshot snapshot) {
+		if (published - consumed == slots.length) {
+			consumed++;
+			dropped++;
+		}
+		slots[(int) (published % slots.length)] = snapshot;
+		published++;
+		notifyAll();
+	}
+
+	// This method waits up to timeout for a snapshot that has not been taken yet and returns the newest,
+	// skipping the older ones. It returns null on timeout and once the ring is finished and drained,
+	// and rethrows a failure of the simulator as an IllegalStateException
+
+	public synchronized Snapshot takeLatest(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (published == consumed && !finished && failure == null) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0) {
+				return null;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, left);
+		}
+		if (failure != null) {
+			throw new IllegalStateException("The simulation failed", failure);
+		}
+		if (published == consumed) {
+			return null;
+		}
+		dropped += published - consumed - 1;
+		consumed = published;
+		int newest = (int) ((published - 1) % slots.length);
+		Snapshot snapshot = slots[newest];
+		// Let go of every taken snapshot, the renderer holds the one it draws
+		Arrays.fill(slots, null);
+		return snapshot;
+	}
+
+	// Called by the simulator after its last publish()
+	public synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+
+	// Called by the simulator instead of finish() when stepping threw
+	public synchronized void fail(Throwable failure) {
+		this.failure = failure;
+		notifyAll();
+	}
+
+	// True once the simulator has finished and every snapshot was taken or skipped
+	public synchronized boolean isDrained() {
+		return (finished || failure != null) && published == consumed;
+	}
+
+	// Called by the renderer when it stops drawing, the simulator then stops too
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	// Snapshots the renderer never drew, because a newer one was already waiting or the ring overflowed
+	public synchronized long getDropped() {
+		return dropped;
+	}
+}
@@ -0,0 +1,92 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+* <p>
+* TCP transport for distributed runs. Addresses are "host:port"; listeners
+* bind to the loopback address by default so several JVMs on one machine can
+* run a distributed board without exposing it to the network. Nagle's
+* algorithm is turned off because every generation is a short request and
+* answer.
+* </p>
+*/
+
+public class SocketTransport implements Transport {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final String host;
+	private final int port;
+
+	// Listens on an ephemeral loopback port
+	public SocketTransport() {
+		this(InetAddress.getLoopbackAddress().getHostAddress(), 0);
+	}
+
+	public SocketTransport(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	public Listener listen() throws IOException {
+		ServerSocket server = new ServerSocket();
+		server.bind(new InetSocketAddress(host, port));
+		return new Listener() {
+			public String address() {
+				return host + ":" + server.getLocalPort();
+			}
+
+			public Link accept() throws IOException {
+				return accept(0);
+			}
+
+			public Link accept(int timeoutMillis) throws IOException {
+				server.setSoTimeout(timeoutMillis);
+				try {
+					return link(server.accept());
+				} catch (SocketTimeoutException e) {
+					return null;
+				}
+			}
+
+			public void close() throws IOException {
+				server.close();
+			}
+		};
+	}
+
+	public Link connect(String address) throws IOException {
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			throw new IllegalArgumentException("Expected host:port but got: " + address);
+		}
+		return link(new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+	}
+
+	private static Link link(Socket socket) throws IOException {
+		socket.setTcpNoDelay(true);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+		return new Link() {
+			public DataInputStream input() {
+				return in;
+			}
+
+			public DataOutputStream output() {
+				return out;
+			}
+
+			public void close() throws IOException {
+				socket.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,183 @@
+/**
+* <p>
+* Unbounded sparse Game of Life board. Only the coordinates of live cells are
+* stored, packed into one long each inside a LongHashSet, so memory follows
+* the population instead of the board area and patterns can travel without
+* ever reaching an edge.
+* </p>
+* <p>
+* step() visits live cells only: each one adds one to the neighbour count of
+* its eight neighbours, and the next generation is read off those counts.
+* As with HashLifeBoard, width and height only select the window that
+* getState() and print() look at.
+* </p>
+*/
+
+public class SparseBoard implements LifeBoard, StateHash {
+
+	private final int width;
+	private final int height;
+
+	private LongHashSet live = new LongHashSet();
+	private LongHashSet nextLive = new LongHashSet();
+
+	// Neighbour counts of every cell next to a live one, reused between generations
+	private final LongIntHashMap counts = new LongIntHashMap();
+
+	// Zobrist hash of the live cells
+	private long stateHash;
+
+	// Rule masks, bit n set when a dead (birth) or live (survival) cell with n live neighbours lives on
+	private Rule rule = Rule.CONWAY;
+	private int birthMask = Rule.CONWAY.getBirthMask();
+	private int survivalMask = Rule.CONWAY.getSurvivalMask();
+
+	public SparseBoard(int height, int width) {
+		/*
+		 * Constructor to create an empty unbounded board whose window is height by width
+		 */
+		this.width = width;
+		this.height = height;
+	}
+
+	static long key(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	static int keyX(long key) {
+		return (int) (key >> 32);
+	}
+
+	static int keyY(long key) {
+		return (int) key;
+	}
+
+	public void setAlive(int x, int y) {
+		if (live.add(key(x, y))) {
+			stateHash ^= Zobrist.cellKey(x, y);
+		}
+	}
+
+	public void setDead(int x, int y) {
+		if (live.remove(key(x, y))) {
+			stateHash ^= Zobrist.cellKey(x, y);
+		}
+	}
+
+	public int getState(int x, int y) {
+		if (x < 0 || x >= width) {
+			return 0;
+		}
+
+		if (y < 0 || y >= height) {
+			return 0;
+		}
+
+		return live.contains(key(x, y)) ? 1 : 0;
+	}
+
+	// State of any cell of the unbounded universe, including cells outside the window
+	public int getCell(int x, int y) {
+		return live.contains(key(x, y)) ? 1 : 0;
+	}
+
+	// This method counts the neighbours of live cells only and keeps the cells the rule says are alive
+
+	public void step() {
+		counts.clear();
+		for (int slot = 0, end = live.capacity(); slot < end; slot++) {
+			if (!live.isUsed(slot)) {
+				continue;
+			}
+			long cell = live.keyAt(slot);
+			int x = keyX(cell);
+			int y = keyY(cell);
+			counts.increment(key(x - 1, y - 1));
+			counts.increment(key(x, y - 1));
+			counts.increment(key(x + 1, y - 1));
+			counts.increment(key(x - 1, y));
+			counts.increment(key(x + 1, y));
+			counts.increment(key(x - 1, y + 1));
+			counts.increment(key(x, y + 1));
+			counts.increment(key(x + 1, y + 1));
+		}
+
+		// Every live cell is visited here anyway, so the hash is rebuilt rather than patched
+		long hash = 0;
+		nextLive.clear();
+		for (int slot = 0, end = counts.capacity(); slot < end; slot++) {
+			if (!counts.isUsed(slot)) {
+				continue;
+			}
+			int count = counts.valueAt(slot);
+			long cell = counts.keyAt(slot);
+			int born = (birthMask >>> count) & 1;
+			int survives = (survivalMask >>> count) & 1;
+			// The set is only probed when the rule treats live and dead cells with this count differently
+			if (born == survives ? born != 0 : (live.contains(cell) ? survives : born) != 0) {
+				nextLive.add(cell);
+				hash ^= Zobrist.mix(cell);
+			}
+		}
+		if ((survivalMask & 1) != 0) {
+			// Isolated live cells have no entry in counts
+			for (int slot = 0, end = live.capacity(); slot < end; slot++) {
+				if (live.isUsed(slot) && counts.get(live.keyAt(slot)) == 0) {
+					nextLive.add(live.keyAt(slot));
+					hash ^= Zobrist.mix(live.keyAt(slot));
+				}
+			}
+		}
+		stateHash = hash;
+
+		LongHashSet swap = live;
+		live = nextLive;
+		nextLive = swap;
+	}
+
+	public void print() {
+		Board.clearConsole();
+		StringBuilder line = new StringBuilder(width + 2);
+		for (int y = 0; y < height; y++) {
+			line.setLength(0);
+			line.append(' ');
+			for (int x = 0; x < width; x++) {
+				line.append(getState(x, y) == 0 ? ' ' : '#');
+			}
+			line.append(' ');
+			System.out.println(line);
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	// This method changes the rule. Rules with B0 would fill the unbounded universe and are rejected
+
+	public void setRule(Rule rule) {
+		if (rule.bornFromNothing()) {
+			throw new IllegalArgumentException("The sparse engine cannot run rules with B0: " + rule);
+		}
+		this.rule = rule;
+		this.birthMask = rule.getBirthMask();
+		this.survivalMask = rule.getSurvivalMask();
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	// Number of live cells in the whole universe, not only the window
+	public long getPopulation() {
+		return live.size();
+	}
+}
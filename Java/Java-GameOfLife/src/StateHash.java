@@ -0,0 +1,13 @@
+/**
+* <p>
+* Boards that keep a Zobrist hash of their live cells. The hash is the XOR of
+* Zobrist.cellKey(x, y) over every live cell and is updated only for cells
+* that flip, so reading it costs nothing per generation. Two boards with the
+* same live cells always have the same hash.
+* </p>
+*/
+
+public interface StateHash {
+
+	long getStateHash();
+}
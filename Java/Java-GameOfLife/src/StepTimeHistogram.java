@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+* <p>
+* Histogram of step times in nanoseconds with eight buckets per power of two,
+* so every reading lies within 12.5% of the true value from 1 ns up to
+* Long.MAX_VALUE, in a fixed 488 buckets. Values 0 to 15 have exact buckets.
+* </p>
+*
+* One thread records and any number of threads read. record() only ever does
+* plain reads and ordered writes of the counters, with no locks or CAS, so it
+* costs a few nanoseconds per call; readers see every count eventually but may
+* see a snapshot that is one record() behind in some of them.
+*/
+
+public class StepTimeHistogram {
+
+	// Bits below the leading 1 that pick the bucket within a power of two
+	private static final int SUB_BITS = 3;
+
+	static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private volatile long total;
+	private volatile long sum;
+	private volatile long max;
+
+	// This method records weight steps that took nanos each. Only one thread may call it
+
+	public void record(long nanos, long weight) {
+		int bucket = bucket(nanos);
+		counts.lazySet(bucket, counts.get(bucket) + weight);
+		sum += nanos * weight;
+		total += weight;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+
+	// Bucket of a value: its magnitude and the SUB_BITS bits below its leading 1
+	static int bucket(long nanos) {
+		if (nanos < 2L << SUB_BITS) {
+			return (int) Math.max(nanos, 0);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int shift = exponent - SUB_BITS;
+		return (shift + 1) << SUB_BITS | (int) (nanos >>> shift) & ((1 << SUB_BITS) - 1);
+	}
+
+	// Largest value that lands in the bucket
+	static long upperBound(int bucket) {
+		if (bucket < 2 << SUB_BITS) {
+			return bucket;
+		}
+		int shift = (bucket >>> SUB_BITS) - 1;
+		long lower = ((1L << SUB_BITS) + (bucket & ((1 << SUB_BITS) - 1))) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+	// Copy of the bucket counts, for percentiles over an interval as the difference of two copies
+	public long[] snapshot() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return copy;
+	}
+
+	// Upper bound of the bucket holding the given fraction of the counts, 0 when there are none
+	public static long percentile(long[] counts, double fraction) {
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return upperBound(i);
+			}
+		}
+		return upperBound(counts.length - 1);
+	}
+
+	public long percentile(double fraction) {
+		return Math.min(percentile(snapshot(), fraction), max);
+	}
+
+	public long getCount() {
+		return total;
+	}
+
+	public double getMean() {
+		long total = this.total;
+		return total == 0 ? 0 : (double) sum / total;
+	}
+
+	public long getMax() {
+		return max;
+	}
+}
@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+* <p>
+* Console renderer for ANSI terminals. Each frame is assembled in one reusable
+* byte array and written with a single call. The first frame clears the
+* screen and draws everything; later frames only move the cursor to the cells
+* that changed since the previous frame and rewrite those, so a mostly still
+* board costs a few bytes per generation instead of the whole grid. A
+* Snapshot of a Viewport is drawn with the density glyph of each character.
+* </p>
+*
+* The layout matches Board.print(): cell (x, y) sits at column x + 2 of row
+* y + 1, and the status line goes right below the board.
+*/
+
+public class TerminalRenderer {
+
+	private static final byte ESC = 27;
+	private static final byte ALIVE = '#';
+	private static final byte DEAD = ' ';
+
+	private final OutputStream out;
+
+	// Frame being assembled, grows on demand and is reused between frames
+	private byte[] buffer = new byte[1 << 16];
+	private int length;
+
+	// Characters on screen after the last frame in row-major order
+	private byte[] shown;
+	private int shownWidth = -1;
+	private int shownHeight = -1;
+
+	// 1-based terminal position of the cursor, 0 when unknown
+	private int cursorRow;
+	private int cursorCol;
+
+	private int lastFrameBytes;
+
+	public TerminalRenderer(OutputStream out) {
+		this.out = out;
+	}
+
+	// This method draws the board, rewriting only cells that changed since the last frame, then the status line
+
+	public void render(CellGrid board, CharSequence status) throws IOException {
+		int width = board.getWidth();
+		int height = board.getHeight();
+		length = 0;
+
+		boolean full = width != shownWidth || height != shownHeight;
+		if (full) {
+			shown = new byte[width * height];
+			shownWidth = width;
+			shownHeight = height;
+			// Hide the cursor, clear the screen and home
+			putCsi();
+			put('?');
+			putInt(25);
+			put('l');
+			putCsi();
+			put('2');
+			put('J');
+			cursorRow = 0;
+		}
+
+		Snapshot snapshot = board instanceof Snapshot ? (Snapshot) board : null;
+		for (int y = 0; y < height; y++) {
+			int base = y * width;
+			for (int x = 0; x < width; x++) {
+				byte glyph = snapshot != null ? Snapshot.GLYPHS[snapshot.getLevel(x, y)]
+						: board.getState(x, y) != 0 ? ALIVE : DEAD;
+				if (full ? glyph == DEAD : glyph == shown[base + x]) {
+					// Unchanged, or blank on the screen that was just cleared
+					shown[base + x] = glyph;
+					continue;
+				}
+				shown[base + x] = glyph;
+				moveTo(y + 1, x + 2);
+				put(glyph);
+				cursorCol++;
+			}
+		}
+
+		moveTo(height + 1, 1);
+		// Clear the old status line before writing the new one
+		putCsi();
+		put('2');
+		put('K');
+		for (int i = 0; i < status.length(); i++) {
+			char c = status.charAt(i);
+			put((byte) (c < 128 ? c : '?'));
+		}
+		put('\n');
+		cursorRow = 0;
+
+		out.write(buffer, 0, length);
+		out.flush();
+		lastFrameBytes = length;
+	}
+
+	// Show the cursor again and leave it below the board
+	public void close() throws IOException {
+		length = 0;
+		putCsi();
+		put('?');
+		putInt(25);
+		put('h');
+		out.write(buffer, 0, length);
+		out.flush();
+	}
+
+	// Bytes written by the last render() call
+	public int getLastFrameBytes() {
+		return lastFrameBytes;
+	}
+
+	// Forget what is on screen so the next frame is drawn in full
+	public void invalidate() {
+		shownWidth = -1;
+		shownHeight = -1;
+	}
+
+	private void moveTo(int row, int col) {
+		if (row == cursorRow && col == cursorCol) {
+			return;
+		}
+		putCsi();
+		putInt(row);
+		put(';');
+		putInt(col);
+		put('H');
+		cursorRow = row;
+		cursorCol = col;
+	}
+
+	// Starts an ANSI control sequence
+	private void putCsi() {
+		put(ESC);
+		put('[');
+	}
+
+	private void putInt(int value) {
+		ensure(11);
+		if (value == 0) {
+			buffer[length++] = '0';
+			return;
+		}
+		int start = length;
+		while (value > 0) {
+			buffer[length++] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		// Digits were written least significant first
+		for (int i = start, j = length - 1; i < j; i++, j--) {
+			byte t = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = t;
+		}
+	}
+
+	private void put(char c) {
+		put((byte) c);
+	}
+
+	private void put(byte b) {
+		ensure(1);
+		buffer[length++] = b;
+	}
+
+	private void ensure(int extra) {
+		if (length + extra > buffer.length) {
+			byte[] bigger = new byte[Math.max(buffer.length << 1, length + extra)];
+			System.arraycopy(buffer, 0, bigger, 0, length);
+			buffer = bigger;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+* <p>
+* Worker process of a distributed run. It owns one horizontal strip of the
+* board, rows y0 (inclusive) to y1 (exclusive) at full width, kept in a
+* HaloBoard. Before every generation it sends its first row to the worker
+* above and its last row to the worker below, and receives their edge rows
+* into its ghost rows; only those rows ever cross process boundaries.
+* </p>
+* <p>
+* The worker connects to the coordinator, reports the address its own
+* listener accepts the worker above on, receives its strip, then runs the
+* coordinator's commands until it is told to shut down or the coordinator
+* goes away. Rows travel as packed bits, 8 cells per byte.
+* </p>
+*/
+
+public class TileWorker {
+
+	// Commands sent by DistributedBoard. SET_ALIVE and SET_DEAD carry x and y on the full board,
+	// STEP a number of generations and is answered with the strip's state hash, population and born
+	// and died counts,
+	// SNAPSHOT is answered with every row of the strip and RULE carries a rule string.
+	// REGION carries a list of columns and one of rows of the strip, both on the full board, and is
+	// answered with the cells where they meet, row by row
+	static final byte SET_ALIVE = 1;
+	static final byte SET_DEAD = 2;
+	static final byte STEP = 3;
+	static final byte SNAPSHOT = 4;
+	static final byte RULE = 5;
+	static final byte SHUTDOWN = 6;
+	static final byte REGION = 7;
+
+	private final Transport.Link coordinator;
+	private final HaloBoard board;
+	private final int y0;
+	private final int width;
+	private final int height;
+
+	// Links to the workers owning the rows just above y0 and just below y1, null at a dead edge
+	private final Transport.Link above;
+	private final Transport.Link below;
+
+	// Edge rows are sent on this thread while the main thread reads the neighbours' rows, so two
+	// workers writing large rows to each other never wait on each other's full socket buffers
+	private final ExecutorService sender;
+
+	private final byte[] sendRow;
+	private final byte[] sendPacked;
+	private final byte[] receiveRow;
+	private final byte[] receivePacked;
+
+	private TileWorker(Transport transport, Transport.Listener peers, Transport.Link coordinator) throws IOException {
+		this.coordinator = coordinator;
+		DataInputStream in = coordinator.input();
+		int workers = in.readInt();
+		this.width = in.readInt();
+		this.y0 = in.readInt();
+		int y1 = in.readInt();
+		boolean wrap = in.readBoolean();
+		String belowAddress = in.readUTF();
+		boolean hasAbove = in.readBoolean();
+		this.height = y1 - y0;
+
+		// A single worker owns the whole board and wraps its rows itself
+		this.board = new HaloBoard(height, width, wrap, y0, workers > 1);
+		this.below = belowAddress.isEmpty() ? null : transport.connect(belowAddress);
+		this.above = hasAbove ? peers.accept() : null;
+
+		this.sender = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "halo-sender");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.sendRow = new byte[width];
+		this.receiveRow = new byte[width];
+		this.sendPacked = new byte[packedLength(width)];
+		this.receivePacked = new byte[packedLength(width)];
+	}
+
+	// This method runs a worker for the coordinator at options.coordinator until it is shut down
+
+	public static void run(Options options) throws IOException {
+		Transport transport = new SocketTransport();
+		try (Transport.Listener peers = transport.listen();
+				Transport.Link coordinator = transport.connect(options.coordinator)) {
+			coordinator.output().writeUTF(peers.address());
+			coordinator.output().flush();
+			new TileWorker(transport, peers, coordinator).serve();
+		}
+	}
+
+	private void serve() throws IOException {
+		DataInputStream in = coordinator.input();
+		DataOutputStream out = coordinator.output();
+		try {
+			while (true) {
+				byte command;
+				try {
+					command = in.readByte();
+				} catch (EOFException e) {
+					// The coordinator went away
+					return;
+				}
+				switch (command) {
+				case SET_ALIVE:
+					board.setAlive(in.readInt(), in.readInt() - y0);
+					break;
+				case SET_DEAD:
+					board.setDead(in.readInt(), in.readInt() - y0);
+					break;
+				case STEP:
+					for (long g = in.readLong(); g > 0; g--) {
+						exchange();
+						board.step();
+					}
+					out.writeLong(board.getStateHash());
+					out.writeLong(board.getPopulation());
+					out.writeLong(board.getBornCount());
+					out.writeLong(board.getDiedCount());
+					out.flush();
+					break;
+				case SNAPSHOT:
+					for (int y = 0; y < height; y++) {
+						board.getRow(y, sendRow);
+						pack(sendRow, sendPacked, width);
+						out.write(sendPacked);
+					}
+					out.flush();
+					break;
+				case REGION:
+					sendRegion(in, out);
+					break;
+				case RULE:
+					board.setRule(Rule.parse(in.readUTF()));
+					break;
+				case SHUTDOWN:
+					return;
+				default:
+					throw new IOException("Unknown command " + command);
+				}
+			}
+		} finally {
+			sender.shutdownNow();
+			if (above != null) {
+				above.close();
+			}
+			if (below != null) {
+				below.close();
+			}
+		}
+	}
+
+	// This method swaps edge rows with the neighbouring strips and stores theirs in the ghost rows
+
+	private void exchange() throws IOException {
+		Future<?> sent = sender.submit(() -> {
+			sendEdge(above, 0);
+			sendEdge(below, height - 1);
+			return null;
+		});
+		if (above != null) {
+			above.input().readFully(receivePacked);
+			unpack(receivePacked, receiveRow, width);
+			board.setGhostRow(-1, receiveRow);
+		}
+		if (below != null) {
+			below.input().readFully(receivePacked);
+			unpack(receivePacked, receiveRow, width);
+			board.setGhostRow(height, receiveRow);
+		}
+		try {
+			sent.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while sending edge rows", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not send edge rows", e.getCause());
+		}
+	}
+
+	private void sendRegion(DataInputStream in, DataOutputStream out) throws IOException {
+		int[] columns = new int[in.readInt()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = in.readInt();
+		}
+		byte[] packed = new byte[packedLength(columns.length)];
+		for (int rows = in.readInt(); rows > 0; rows--) {
+			int y = in.readInt() - y0;
+			Arrays.fill(packed, (byte) 0);
+			for (int i = 0; i < columns.length; i++) {
+				packed[i >>> 3] |= board.getState(columns[i], y) << (i & 7);
+			}
+			out.write(packed);
+		}
+		out.flush();
+	}
+
+	private void sendEdge(Transport.Link link, int y) throws IOException {
+		if (link == null) {
+			return;
+		}
+		board.getRow(y, sendRow);
+		pack(sendRow, sendPacked, width);
+		link.output().write(sendPacked);
+		link.output().flush();
+	}
+
+	static int packedLength(int width) {
+		return (width + 7) >>> 3;
+	}
+
+	// Packs one byte per cell into one bit per cell, cell x in bit (x & 7) of byte x / 8
+	static void pack(byte[] row, byte[] packed, int width) {
+		Arrays.fill(packed, (byte) 0);
+		for (int x = 0; x < width; x++) {
+			packed[x >>> 3] |= row[x] << (x & 7);
+		}
+	}
+
+	static void unpack(byte[] packed, byte[] row, int width) {
+		for (int x = 0; x < width; x++) {
+			row[x] = (byte) ((packed[x >>> 3] >>> (x & 7)) & 1);
+		}
+	}
+}
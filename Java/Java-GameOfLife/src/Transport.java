@@ -0,0 +1,39 @@
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+* <p>
+* How the processes of a distributed run reach each other. The coordinator
+* and every TileWorker only see Links, two-way byte streams between two
+* processes, so TCP can be swapped for another transport (shared memory,
+* Unix domain sockets, an in-process pipe for tests) without touching the
+* protocol. Addresses are plain strings whose meaning is up to the transport.
+* </p>
+*/
+
+public interface Transport {
+
+	// One end of a connection. Output is buffered, flush() it before waiting for an answer
+	interface Link extends Closeable {
+		DataInputStream input();
+
+		DataOutputStream output();
+	}
+
+	// Accepts Links from other processes at address()
+	interface Listener extends Closeable {
+		String address();
+
+		Link accept() throws IOException;
+
+		// Like accept(), but returns null when nobody connected within timeoutMillis
+		Link accept(int timeoutMillis) throws IOException;
+	}
+
+	// Start accepting connections, the returned listener's address can be handed to other processes
+	Listener listen() throws IOException;
+
+	Link connect(String address) throws IOException;
+}
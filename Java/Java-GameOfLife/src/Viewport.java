@@ -0,0 +1,117 @@
+/**
+* <p>
+* Window of the board that is drawn: the cell at its top-left corner, the
+* zoom in board cells per character side and its size in characters. At zoom
+* 1 every character is a cell. At zoom z it covers a z x z block and shows how
+* many of those cells are alive with one of Snapshot.GLYPHS.
+* </p>
+*
+* Viewports are immutable; panning and zooming return a new one, so the
+* thread that reads keys can hand it to the simulator thread in one write.
+* Every method that takes the board size keeps the window on the board.
+*/
+
+public final class Viewport {
+
+	private final int x;
+	private final int y;
+	private final int zoom;
+	private final int columns;
+	private final int rows;
+
+	public Viewport(int x, int y, int zoom, int columns, int rows) {
+		if (zoom < 1) {
+			throw new IllegalArgumentException("Zoom must be at least 1: " + zoom);
+		}
+		if (columns < 1 || rows < 1) {
+			throw new IllegalArgumentException("Viewport must be at least 1x1: " + columns + "x" + rows);
+		}
+		this.x = x;
+		this.y = y;
+		this.zoom = zoom;
+		this.columns = columns;
+		this.rows = rows;
+	}
+
+	// This method creates the viewport asked for by --viewport, --zoom, --view-x and --view-y. Zoom 0 fits
+	// the whole board
+
+	public static Viewport of(Options options, int width, int height) {
+		Viewport viewport = new Viewport(options.viewX, options.viewY, Math.max(options.zoom, 1), options.viewColumns,
+				options.viewRows);
+		return options.zoom == 0 ? viewport.fit(width, height) : viewport.clamp(width, height);
+	}
+
+	// Smallest power-of-two zoom that shows the whole board
+	public Viewport fit(int width, int height) {
+		int zoom = 1;
+		while (zoom < (1 << 30) && ((long) columns * zoom < width || (long) rows * zoom < height)) {
+			zoom <<= 1;
+		}
+		return new Viewport(0, 0, zoom, columns, rows).clamp(width, height);
+	}
+
+	// Moves the window by the given fractions of its own size
+	public Viewport pan(double across, double down, int width, int height) {
+		long dx = Math.round(across * columns) * zoom;
+		long dy = Math.round(down * rows) * zoom;
+		return at(x + dx, y + dy, zoom, width, height);
+	}
+
+	// This method changes the zoom to the given value and keeps the cell at the centre of the window in place
+
+	public Viewport zoom(int zoom, int width, int height) {
+		zoom = Math.max(1, Math.min(zoom, 1 << 30));
+		long centreX = x + (long) columns * this.zoom / 2;
+		long centreY = y + (long) rows * this.zoom / 2;
+		return at(centreX - (long) columns * zoom / 2, centreY - (long) rows * zoom / 2, zoom, width, height);
+	}
+
+	// Shifts the window so it shows as much of the board as it can
+	public Viewport clamp(int width, int height) {
+		Viewport clamped = at(x, y, zoom, width, height);
+		return clamped.x == x && clamped.y == y ? this : clamped;
+	}
+
+	// Viewport of this size with its corner at (x, y), moved back onto the board
+	private Viewport at(long x, long y, int zoom, int width, int height) {
+		long maxX = Math.max(0, width - (long) columns * zoom);
+		long maxY = Math.max(0, height - (long) rows * zoom);
+		return new Viewport((int) Math.max(0, Math.min(x, maxX)), (int) Math.max(0, Math.min(y, maxY)), zoom, columns,
+				rows);
+	}
+
+	// Characters across and down that the window fills on a board of the given size
+	public int visibleColumns(int width) {
+		return (int) Math.max(0, Math.min(columns, ((long) width - x + zoom - 1) / zoom));
+	}
+
+	public int visibleRows(int height) {
+		return (int) Math.max(0, Math.min(rows, ((long) height - y + zoom - 1) / zoom));
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getZoom() {
+		return zoom;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	// Position and zoom for the status line
+	public String describe() {
+		return "View: " + x + "," + y + (zoom > 1 ? " 1:" + zoom : "");
+	}
+}
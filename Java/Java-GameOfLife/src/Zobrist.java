@@ -0,0 +1,25 @@
+/**
+* <p>
+* Zobrist keys for cells. Instead of a random table, which would be as large
+* as the board, every key is a 64-bit mix of the packed coordinates, so keys
+* exist for any coordinate including those of unbounded boards.
+* </p>
+*/
+
+public class Zobrist {
+
+	private Zobrist() {
+	}
+
+	// Key of the cell (x, y)
+	public static long cellKey(int x, int y) {
+		return mix(((long) x << 32) | (y & 0xFFFFFFFFL));
+	}
+
+	// SplitMix64 finaliser, a bijection so distinct cells never share a key
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
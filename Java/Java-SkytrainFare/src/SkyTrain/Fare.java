@@ -0,0 +1,31 @@
+package SkyTrain;
+
+public class Fare {
+
+	private final double price;
+	private final int zones;
+
+
+	public Fare(double price, int zones) {
+		super();
+		this.price = price;
+		this.zones = zones;
+	}
+
+
+	public double getPrice() {
+		return price;
+	}
+
+
+	// 0 for a trip that stays on Sea Island, otherwise 1 to 3
+	public int getZones() {
+		return zones;
+	}
+
+
+	public String toString() {
+		return "$" + price + (zones > 0 ? " (" + zones + "-ZONE)" : "");
+	}
+
+}
@@ -0,0 +1,153 @@
+package SkyTrain;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Every fare between two stations, worked out once when the stations are
+ * loaded. A station id is its position in the list the table was built from,
+ * which is also its row in the From and To lists, so a quote is one array read.
+ */
+public class FareTable {
+
+	public static final int CASH = 0;
+	public static final int CONTACTLESS = 1;
+	public static final int STORED_VALUE = 2;
+	public static final int PAYMENTS = 3;
+
+	public static final int ADULT = 0;
+	public static final int CONCESSION = 1;
+	public static final int AGES = 2;
+
+	private static final String[] PAYMENT_NAMES = { "CASH", "CONTACTLESS PAYMENT", "STORED VALUE" };
+
+	// Name of the age class in the fare message, by payment. There is no contactless concession fare
+	private static final String[][] AGE_NAMES = {
+		{ "Adult", "Concession" },
+		{ "Adult", null },
+		{ "Adult", "Concessio" }
+	};
+
+	private static final String[] SEA_ISLAND = { "YVR-Airport", "Templeton", "Sea Island Centre" };
+
+	// Fares for 1, 2 and 3 zones by payment and age, then the same from a Sea Island station, which
+	// adds the YVR AddFare
+	private static final double[][][] FARES = {
+		{ { 3.05, 4.35, 5.90 }, { 2, 3, 4.05 } },
+		{ { 3.05, 4.35, 5.90 }, null },
+		{ { 2.45, 3.55, 4.60 }, { 2, 3, 4.05 } }
+	};
+
+	private static final double[][][] SEA_ISLAND_FARES = {
+		{ { 8.05, 9.35, 10.90 }, { 7, 8, 9.05 } },
+		{ { 8.05, 9.35, 10.90 }, null },
+		{ { 7.45, 8.55, 9.60 }, { 7, 8, 9.05 } }
+	};
+
+	private static final Fare FREE = new Fare(0, 0);
+
+	private final int count;
+	private final String[] names;
+	private final Fare[] fares;
+
+
+	public FareTable(List<Station> stations) {
+		count = stations.size();
+		names = new String[count];
+		fares = new Fare[count * count * PAYMENTS * AGES];
+
+		// A row is looked up by the text before the first "(" of its list entry, and when two stations
+		// share that name the last one wins
+		HashMap<String, Integer> byName = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			byName.put(stations.get(i).getName(), i);
+		}
+
+		int[] zones = new int[count];
+		boolean[] seaIsland = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			Integer match = byName.get(stations.get(i).getName().split("\\(")[0]);
+			Station station = stations.get(match == null ? i : match);
+			names[i] = station.getName();
+			zones[i] = station.getZone();
+			for (String name : SEA_ISLAND) {
+				seaIsland[i] |= name.equals(station.getName());
+			}
+		}
+
+		// The same few Fare objects are shared by every entry
+		Fare[][][][] shared = new Fare[2][PAYMENTS][AGES][];
+		for (int payment = 0; payment < PAYMENTS; payment++) {
+			for (int age = 0; age < AGES; age++) {
+				shared[0][payment][age] = fares(FARES[payment][age]);
+				shared[1][payment][age] = fares(SEA_ISLAND_FARES[payment][age]);
+			}
+		}
+
+		for (int origin = 0; origin < count; origin++) {
+			for (int destination = 0; destination < count; destination++) {
+				int difference = Math.abs(zones[origin] - zones[destination]);
+				for (int payment = 0; payment < PAYMENTS; payment++) {
+					for (int age = 0; age < AGES; age++) {
+						Fare[] byZones = shared[seaIsland[origin] ? 1 : 0][payment][age];
+						Fare fare = null;
+						if (byZones == null) {
+							// No fare of this kind
+						} else if (seaIsland[origin] && seaIsland[destination]) {
+							fare = FREE;
+						} else if (difference < byZones.length) {
+							fare = byZones[difference];
+						}
+						fares[index(origin, destination, payment, age)] = fare;
+					}
+				}
+			}
+		}
+	}
+
+
+	private static Fare[] fares(double[] prices) {
+		if (prices == null) {
+			return null;
+		}
+		Fare[] fares = new Fare[prices.length];
+		for (int i = 0; i < prices.length; i++) {
+			fares[i] = new Fare(prices[i], i + 1);
+		}
+		return fares;
+	}
+
+
+	private int index(int origin, int destination, int payment, int age) {
+		return ((origin * count + destination) * PAYMENTS + payment) * AGES + age;
+	}
+
+
+	// The fare from origin to destination, or null when there is none, such as a trip of more than
+	// 3 zones or a contactless concession
+	public Fare getFare(int origin, int destination, int payment, int age) {
+		return fares[index(origin, destination, payment, age)];
+	}
+
+
+	// Name of the station that quotes for id are made from
+	public String getName(int id) {
+		return names[id];
+	}
+
+
+	public static String getPaymentName(int payment) {
+		return PAYMENT_NAMES[payment];
+	}
+
+
+	public static String getAgeName(int payment, int age) {
+		return AGE_NAMES[payment][age];
+	}
+
+
+	public int getStationCount() {
+		return count;
+	}
+
+}
@@ -36,7 +36,7 @@ public class SkyTrainMain extends JFrame {
 	static Statement statement = null;
 	static ResultSet resultSet = null;
 	
-	static String line1 = "", line2="";
+	static FareTable fareTable = null;
 	
 	static DefaultListModel<String> nameModel = new DefaultListModel<>();
 	static ArrayList<String> stations = new ArrayList<>();
@@ -148,6 +148,7 @@ public class SkyTrainMain extends JFrame {
 			e.printStackTrace();
 		}
 		
+		fareTable = new FareTable(stationsArrayList);
 
 	}
 	
@@ -217,41 +218,19 @@ public class SkyTrainMain extends JFrame {
 		btnCheckFare.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				
-				String src = listSource.getSelectedValue().toString();
-				String[] srcStrings = src.split("\\(");
-				
-				String dest = listDestination.getSelectedValue().toString();
-				String[] destStrings = dest.split("\\(");
-
-				
-				int zone1 = 0,zone2 =0;
-				
-				
-				
-				for(Station st: stationsArrayList){
-		            if(st.getName().equals(srcStrings[0])){
-		               zone1 = st.getZone();
-		               line1 = st.getName();
-		            }
-		        }
-				
-				
-				
-				
-				for(Station st: stationsArrayList){
-		            if(st.getName().equals(destStrings[0])){
-		               zone2 = st.getZone();
-		               line2 = st.getName();
-		            }
-		        }
+				int origin = listSource.getSelectedIndex();
+				int destination = listDestination.getSelectedIndex();
+				if(origin < 0 || destination < 0) {
+					return;
+				}
 				
 				
 				if(rdbtnCashFare.isSelected()){
 					if(rdbtnAdult.isSelected()) {
-						Cash_Fare_Adult(zone1, zone2);
+						showFare(origin, destination, FareTable.CASH, FareTable.ADULT);
 					}
 					if(rdbtnConcession.isSelected()) {
-						Cash_Fare_Concession(zone1, zone2);
+						showFare(origin, destination, FareTable.CASH, FareTable.CONCESSION);
 					}
 					else if(!(rdbtnAdult.isSelected()) && !(rdbtnConcession.isSelected())) {
 						JOptionPane.showMessageDialog(null, "Please choose fair type");
@@ -261,7 +240,7 @@ public class SkyTrainMain extends JFrame {
 				
 				if(rdbtnContactLess.isSelected()) {
 					if(rdbtnAdult.isSelected()) {
-						ContactLess(zone1, zone2);
+						showFare(origin, destination, FareTable.CONTACTLESS, FareTable.ADULT);
 					}
 					
 					else if(!(rdbtnConcession.isSelected())) {
@@ -275,11 +254,11 @@ public class SkyTrainMain extends JFrame {
 					
 					
 					if(rdbtnConcession.isSelected()) {
-						StoredValue_Concession(zone1,zone2);
+						showFare(origin, destination, FareTable.STORED_VALUE, FareTable.CONCESSION);
 					}
 					
 					if(rdbtnAdult.isSelected()) {
-						StoredValue_Adult(zone1,zone2);
+						showFare(origin, destination, FareTable.STORED_VALUE, FareTable.ADULT);
 					}
 					
 					else if(!(rdbtnAdult.isSelected()) && !(rdbtnConcession.isSelected())) {
@@ -295,230 +274,15 @@ public class SkyTrainMain extends JFrame {
 	
 	
 	
-	public void Cash_Fare_Adult(int zone1, int zone2) {
-		
-		
-		int fare = Math.abs(zone1 - zone2);
-		
-		
-		if(line1.equals("YVR-Airport") || line1.equals("Templeton") || line1.equals("Sea Island Centre")) {
-			
-			
-
-			if(line2.equals("YVR-Airport") || line2.equals("Templeton") || line2.equals("Sea Island Centre")) {
-				printMessage("Adult", "CASH", line1, line2, 0, 0);
-			}
-			
-			else if(fare == 0) {
-				printMessage("Adult", "CASH", line1, line2, 8.05, 1);
-			}
-			
-			else if(fare == 1) {
-				printMessage("Adult", "CASH", line1, line2, 9.35, 2);
-			}
-			
-			else if(fare == 2) {
-				printMessage("Adult", "CASH", line1, line2, 10.90, 3);
-			}
-		}
-		
-		else if(fare == 0) {
-			printMessage("Adult", "CASH", line1, line2, 3.05, 1);
-		}
-		
-		else if(fare == 1) {
-			printMessage("Adult", "CASH", line1, line2, 4.35, 2);
-		}
-		
-		else if(fare == 2) {
-			printMessage("Adult", "CASH", line1, line2, 5.90, 3);
-		}
-		
-		
-		
-		
-		
-		
-	}	
-	
-	
-	public void Cash_Fare_Concession(int zone1, int zone2) {
-		
-		
-		int fare = Math.abs(zone1 - zone2);
-		
-		
-		if(line1.equals("YVR-Airport") || line1.equals("Templeton") || line1.equals("Sea Island Centre")) {
-			
-			
-			if(line2.equals("YVR-Airport") || line2.equals("Templeton") || line2.equals("Sea Island Centre")) {
-				printMessage("Concession", "CASH", line1, line2, 0, 0);
-			}
-			
-			else if(fare == 0) {
-				printMessage("Concession", "CASH", line1, line2, 7, 1);
-			}
-			
-			else if(fare == 1) {
-				printMessage("Concession", "CASH", line1, line2, 8, 2);
-			}
-			
-			else if(fare == 2) {
-				printMessage("Concession", "CASH", line1, line2, 9.05, 3);
-			}
-		}
-		
-		
-		else if(fare == 0) {
-			printMessage("Concession", "CASH", line1, line2, 2, 1);
-		}
-		
-		else if(fare == 1) {
-			printMessage("Concession", "CASH", line1, line2, 3, 2);
-		}
-		
-		else if(fare == 2) {
-			printMessage("Concession", "CASH", line1, line2, 4.05, 3);
-		}
-		
-		
-		
-		
-	}	
-	
-	public void ContactLess(int zone1, int zone2) {
-		
-		
-		int fare = Math.abs(zone1 - zone2);
-		
-		
-		if(line1.equals("YVR-Airport") || line1.equals("Templeton") || line1.equals("Sea Island Centre")) {
-			
-			
-			if(line2.equals("YVR-Airport") || line2.equals("Templeton") || line2.equals("Sea Island Centre")) {
-				printMessage("Adult", "CONTACTLESS PAYMENT", line1, line2,0, 0);
-			}
-			
-			else if(fare == 0) {
-				printMessage("Adult", "CONTACTLESS PAYMENT", line1, line2, 8.05, 1);
-			}
-			
-			else if(fare == 1) {
-				printMessage("Adult", "CONTACTLESS PAYMENT", line1, line2, 9.35, 2);
-			}
-			
-			else if(fare == 2) {
-				printMessage("Adult", "CONTACTLESS PAYMENT", line1, line2, 10.90, 3);
-			}
-		}
-		
-		
-		else if(fare == 0) {
-			printMessage("Adult", "CONTACTLESS PAYMENT", line1, line2, 3.05, 1);
-		}
-		
-		else if(fare == 1) {
-			printMessage("Adult", "CONTACTLESS PAYMENT", line1, line2, 4.35, 2);
-		}
-		
-		else if(fare == 2) {
-			printMessage("Adult", "CONTACTLESS PAYMENT", line1, line2, 5.90, 3);
-		}
-		
-		
-		
-		
-	}
-	
-	
-	
-	public void StoredValue_Adult(int zone1, int zone2) {
-		
-		
-		int fare = Math.abs(zone1 - zone2);
-		
-		
-		if(line1.equals("YVR-Airport") || line1.equals("Templeton") || line1.equals("Sea Island Centre")) {
-			
-			
-			if(line2.equals("YVR-Airport") || line2.equals("Templeton") || line2.equals("Sea Island Centre")) {
-				printMessage("Adult", "STORED VALUE", line1, line2, 0, 0);
-			}
-			
-			else if(fare == 0) {
-				printMessage("Adult", "STORED VALUE", line1, line2, 7.45, 1);
-			}
-			
-			else if(fare == 1) {
-				printMessage("Adult", "STORED VALUE", line1, line2, 8.55, 2);
-			}
-			
-			else if(fare == 2) {
-				printMessage("Adult", "STORED VALUE", line1, line2, 9.60, 3);
-			}
-		}
-		
-		
-		
-		else if(fare == 0) {
-			printMessage("Adult", "STORED VALUE", line1, line2, 2.45, 1);
-		}
-		
-		else if(fare == 1) {
-			printMessage("Adult", "STORED VALUE", line1, line2, 3.55, 2);
-		}
-		
-		else if(fare == 2) {
-			printMessage("Adult", "STORED VALUE", line1, line2, 4.60, 3);
-		}
-		
-		
-		
-		
-	}
-	
-	
-	
-	public void StoredValue_Concession(int zone1, int zone2) {
-		
+	// Shows the fare from origin to destination, if there is one, looked up in fareTable
+	public void showFare(int origin, int destination, int payment, int age) {
 		
-		int fare = Math.abs(zone1 - zone2);
+		Fare fare = fareTable.getFare(origin, destination, payment, age);
 		
-		
-		if(line1.equals("YVR-Airport") || line1.equals("Templeton") || line1.equals("Sea Island Centre")) {
-			
-			
-			if(line2.equals("YVR-Airport") || line2.equals("Templeton") || line2.equals("Sea Island Centre")) {
-				printMessage("Concessio", "STORED VALUE", line1, line2, 0,0);
-			}
-			
-			else if(fare == 0) {
-				printMessage("Concessio", "STORED VALUE", line1, line2, 7, 1);
-			}
-			
-			else if(fare == 1) {
-				printMessage("Concessio", "STORED VALUE", line1, line2, 8, 2);
-			}
-			
-			else if(fare == 2) {
-				printMessage("Concessio", "STORED VALUE", line1, line2, 9.05, 3);
-			}
+		if(fare != null) {
+			printMessage(FareTable.getAgeName(payment, age), FareTable.getPaymentName(payment), fareTable.getName(origin), fareTable.getName(destination), fare.getPrice(), fare.getZones());
 		}
 		
-		
-		else if(fare == 0) {
-			printMessage("Concessio", "STORED VALUE", line1, line2, 2, 1);
-		}
-		
-		else if(fare == 1) {
-			printMessage("Concessio", "STORED VALUE", line1, line2, 3, 2);
-		}
-		
-		else if(fare == 2) {
-			printMessage("Concessio", "STORED VALUE", line1, line2, 4.05, 3);
-		}
-		
-		
 	}
 	
 	